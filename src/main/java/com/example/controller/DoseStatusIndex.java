@@ -0,0 +1,68 @@
+package com.example.controller;
+
+import com.example.model.DoseHistory;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DoseStatusIndex Class
+ * Recorded doses of one period keyed by medicine, each medicine's scheduled times sorted,
+ * so "was a dose recorded near this reminder" is a hash lookup plus a binary search
+ * instead of a query or a scan per reminder.
+ */
+class DoseStatusIndex {
+    private static final long[] NONE = new long[0];
+
+    // Scheduled times as wall-clock epoch seconds, ascending
+    private final Map<Integer, long[]> timesByMedicine;
+
+    private DoseStatusIndex(Map<Integer, long[]> timesByMedicine) {
+        this.timesByMedicine = timesByMedicine;
+    }
+
+    static DoseStatusIndex of(List<DoseHistory> history) {
+        Map<Integer, List<LocalDateTime>> grouped = new HashMap<>();
+        for (DoseHistory h : history) {
+            if (h.getScheduledTime() != null) {
+                grouped.computeIfAbsent(h.getMedicineId(), id -> new ArrayList<>()).add(h.getScheduledTime());
+            }
+        }
+        Map<Integer, long[]> times = new HashMap<>();
+        for (Map.Entry<Integer, List<LocalDateTime>> e : grouped.entrySet()) {
+            long[] sorted = new long[e.getValue().size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = seconds(e.getValue().get(i));
+            }
+            Arrays.sort(sorted);
+            times.put(e.getKey(), sorted);
+        }
+        return new DoseStatusIndex(times);
+    }
+
+    /**
+     * Whether the medicine has a dose scheduled strictly within tolerance of the time
+     */
+    boolean hasDoseNear(int medicineId, LocalDateTime time, Duration tolerance) {
+        long[] times = timesByMedicine.getOrDefault(medicineId, NONE);
+        long target = seconds(time);
+        long window = tolerance.getSeconds();
+        int i = Arrays.binarySearch(times, target);
+        if (i >= 0) {
+            return true;
+        }
+        int next = -i - 1; // first time after target
+        return (next < times.length && times[next] - target < window)
+                || (next > 0 && target - times[next - 1] < window);
+    }
+
+    private static long seconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+}
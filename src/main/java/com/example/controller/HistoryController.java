@@ -2,68 +2,126 @@ package com.example.controller;
 
 import com.example.database.DatabaseManager;
 import com.example.model.DoseHistory;
+import com.example.utils.AsyncUtils;
+import com.example.utils.DataChangeBus;
+import com.example.utils.DataChangeEvent;
 import com.example.utils.DataChangeListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class HistoryController {
     private static final Logger logger = LoggerFactory.getLogger(HistoryController.class);
     private DatabaseManager dbManager;
-    private List<DoseHistory> historyList;
-    private List<DataChangeListener> listeners = new ArrayList<>();
+    // Bumped on every insert (queued ones once committed), so derived plans know when they are stale
+    private final AtomicLong version = new AtomicLong();
 
     public HistoryController() {
-        this.dbManager = DatabaseManager.getInstance();
-        this.historyList = new ArrayList<>();
-        loadHistory();
+        this(DatabaseManager.getInstance());
     }
 
-    public void loadHistory() {
-        this.historyList = dbManager.getAllDoseHistory();
+    /**
+     * Work against a specific database (benchmarks, tools)
+     */
+    public HistoryController(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
     }
 
     public int addHistory(DoseHistory history) {
         int id = dbManager.addDoseHistory(history);
         if (id > 0) {
             history.setId(id);
-            historyList.add(0, history); // Add to top
-            notifyDataChanged();
+            version.incrementAndGet();
+            DataChangeBus.shared().publish(DataChangeEvent.added(DataChangeEvent.Topic.HISTORY, id, history));
         }
         return id;
     }
 
-    public List<DoseHistory> getHistoryList() {
-        return new ArrayList<>(historyList);
+    /**
+     * Queue a dose for group commit (bulk writes); it counts as recorded, and listeners
+     * hear of it, once its transaction has committed
+     * @return completes on the queue's thread with the new id, or -1 on failure
+     */
+    public CompletableFuture<Integer> appendHistory(DoseHistory history) {
+        return dbManager.appendDoseHistory(history).thenApply(id -> {
+            if (id > 0) {
+                history.setId(id);
+                version.incrementAndGet();
+                DataChangeBus.shared().publish(DataChangeEvent.added(DataChangeEvent.Topic.HISTORY, id, history));
+            }
+            return id;
+        });
     }
-    
-    public void addDataChangeListener(DataChangeListener listener) {
-        listeners.add(listener);
+
+    /**
+     * Changes whenever a dose is recorded
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Lazily loaded history, newest first. Open a new source to see rows added since.
+     * @param status only rows with this status, or null for all
+     */
+    public HistorySource openHistory(String status) {
+        return new HistorySource(dbManager, status);
+    }
+
+    /**
+     * Open a history source and count its rows in the background
+     */
+    public CompletableFuture<HistorySource> openHistoryAsync(String status) {
+        return AsyncUtils.supplyAsync(() -> {
+            HistorySource source = openHistory(status);
+            source.size();
+            return source;
+        });
+    }
+
+    /**
+     * History scheduled in [from, to), oldest first
+     */
+    public List<DoseHistory> getHistoryBetween(LocalDateTime from, LocalDateTime to) {
+        return dbManager.getDoseHistoryBetween(from, to);
     }
     
-    private void notifyDataChanged() {
-        for (DataChangeListener l : listeners) l.onHistoryDataChanged();
+    public void addDataChangeListener(DataChangeListener listener) {
+        DataChangeBus.shared().subscribe(listener, DataChangeEvent.Topic.HISTORY);
     }
+
     
     public long getTakenTodayCount() {
-        java.time.LocalDate today = java.time.LocalDate.now();
-        return historyList.stream()
-            .filter(h -> h.getScheduledTime() != null && h.getScheduledTime().toLocalDate().equals(today))
-            .filter(h -> com.example.model.DoseHistory.STATUS_TAKEN.equals(h.getStatus()))
-            .count();
+        return countToday(DoseHistory.STATUS_TAKEN);
     }
     
     public long getMissedTodayCount() {
-        java.time.LocalDate today = java.time.LocalDate.now();
-        return historyList.stream()
-            .filter(h -> h.getScheduledTime() != null && h.getScheduledTime().toLocalDate().equals(today))
-            .filter(h -> com.example.model.DoseHistory.STATUS_MISSED.equals(h.getStatus()))
-            .count();
+        return countToday(DoseHistory.STATUS_MISSED);
+    }
+
+    public CompletableFuture<Long> getTakenTodayCountAsync() {
+        return AsyncUtils.supplyAsync(this::getTakenTodayCount);
+    }
+
+    public CompletableFuture<Long> getMissedTodayCountAsync() {
+        return AsyncUtils.supplyAsync(this::getMissedTodayCount);
+    }
+
+    private long countToday(String status) {
+        LocalDateTime startOfDay = LocalDate.now().atStartOfDay();
+        return dbManager.countDoseHistoryBetween(startOfDay, startOfDay.plusDays(1), status);
     }
     
     public List<DoseHistory> getRecentHistory(int limit) {
-        return historyList.stream().limit(limit).collect(java.util.stream.Collectors.toList());
+        return dbManager.getDoseHistoryPage(null, null, limit);
+    }
+
+    public CompletableFuture<List<DoseHistory>> getRecentHistoryAsync(int limit) {
+        return AsyncUtils.supplyAsync(() -> getRecentHistory(limit));
     }
 }
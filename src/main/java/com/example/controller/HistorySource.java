@@ -0,0 +1,180 @@
+package com.example.controller;
+
+import com.example.database.DatabaseManager;
+import com.example.model.DoseHistory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HistorySource Class
+ * Read-only, lazily loaded view of the dose history (newest first), optionally filtered by status.
+ * Rows are fetched in keyset-paginated pages on first access and only the most recently used
+ * pages are kept, so memory stays bounded however long the history is.
+ * size(), get() and prefetch() may query the database and belong on a background thread;
+ * knownSize(), peek() and isLoaded() only read what is already loaded and are safe on the UI thread.
+ */
+public class HistorySource {
+    public static final int PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 10;
+    // Cursors are a few bytes each; beyond this many, far jumps start from a more distant cursor
+    private static final int MAX_CACHED_CURSORS = 4096;
+
+    private final DatabaseManager dbManager;
+    private final String status;
+    private volatile int size = -1;
+    // Both maps are guarded by lock; queries run outside it so peek() never waits on the database
+    private final Object lock = new Object();
+    private final Map<Integer, List<DoseHistory>> pages = lruMap(MAX_CACHED_PAGES);
+    // Last row of each loaded page (id and scheduled time only): the cursor for the page after it
+    private final Map<Integer, DoseHistory> pageEnds = lruMap(MAX_CACHED_CURSORS);
+
+    HistorySource(DatabaseManager dbManager, String status) {
+        this.dbManager = dbManager;
+        this.status = status;
+    }
+
+    /**
+     * Status this source is filtered on, or null for all rows
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Number of rows, counted once and then cached
+     */
+    public int size() {
+        if (size < 0) {
+            size = dbManager.countDoseHistory(status);
+        }
+        return size;
+    }
+
+    /**
+     * Number of rows if already counted, otherwise -1
+     */
+    public int knownSize() {
+        return size;
+    }
+
+    /**
+     * Row at the given position, loading its page if needed; null if out of range
+     */
+    public DoseHistory get(int index) {
+        if (index < 0 || index >= size()) {
+            return null;
+        }
+        return rowOf(page(index / PAGE_SIZE), index);
+    }
+
+    /**
+     * Row at the given position if its page is loaded, otherwise null. Never queries.
+     */
+    public DoseHistory peek(int index) {
+        List<DoseHistory> page;
+        synchronized (lock) {
+            page = pages.get(index / PAGE_SIZE);
+        }
+        return page != null ? rowOf(page, index) : null;
+    }
+
+    /**
+     * Whether the page holding this position is loaded (peek() then answers without a query)
+     */
+    public boolean isLoaded(int index) {
+        synchronized (lock) {
+            return pages.containsKey(index / PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Load the pages covering rows firstIndex..lastIndex ahead of get() calls for them
+     */
+    public void prefetch(int firstIndex, int lastIndex) {
+        int last = Math.min(lastIndex, size() - 1);
+        for (int pageIndex = Math.max(firstIndex, 0) / PAGE_SIZE; pageIndex <= last / PAGE_SIZE && last >= 0; pageIndex++) {
+            page(pageIndex);
+        }
+    }
+
+    private List<DoseHistory> page(int pageIndex) {
+        DoseHistory after = null;
+        int nearestPage = -1;
+        DoseHistory nearest = null;
+        synchronized (lock) {
+            List<DoseHistory> page = pages.get(pageIndex);
+            if (page != null) {
+                return page;
+            }
+            if (pageIndex > 0) {
+                after = pageEnds.get(pageIndex - 1);
+            }
+            if (pageIndex > 0 && after == null) {
+                // Iterating leaves the access order alone
+                for (Map.Entry<Integer, DoseHistory> end : pageEnds.entrySet()) {
+                    if (end.getKey() < pageIndex - 1 && end.getKey() > nearestPage) {
+                        nearestPage = end.getKey();
+                        nearest = end.getValue();
+                    }
+                }
+            }
+        }
+        if (pageIndex > 0 && after == null) {
+            after = seekCursor(pageIndex, nearestPage, nearest);
+        }
+        List<DoseHistory> page = (pageIndex > 0 && after == null) ? List.of() : dbManager.getDoseHistoryPage(status, after, PAGE_SIZE);
+        synchronized (lock) {
+            if (after != null) {
+                pageEnds.put(pageIndex - 1, after);
+            }
+            if (!page.isEmpty()) {
+                pageEnds.put(pageIndex, cursorOf(page.get(page.size() - 1)));
+            }
+            pages.put(pageIndex, page);
+        }
+        return page;
+    }
+
+    /**
+     * Key of the last row before the page. Finding it steps over index entries one by one, so
+     * the walk starts from whichever is fewest rows away: the nearest cached cursor before the
+     * page (or the newest row), or the oldest row.
+     */
+    private DoseHistory seekCursor(int pageIndex, int nearestPage, DoseHistory nearest) {
+        int target = pageIndex * PAGE_SIZE - 1;
+        int fromCursor = nearest != null ? target - (nearestPage + 1) * PAGE_SIZE : target;
+        int fromOldest = size() - 1 - target;
+        if (fromOldest >= 0 && fromOldest < fromCursor) {
+            return dbManager.getDoseHistoryKeyFromOldest(status, fromOldest);
+        }
+        DoseHistory key = dbManager.getDoseHistoryKeyAt(status, nearest, fromCursor);
+        if (key == null && nearest != null) {
+            // Walked off the rows with a scheduled time; count from the newest row instead
+            key = dbManager.getDoseHistoryKeyAt(status, null, target);
+        }
+        return key;
+    }
+
+    private static DoseHistory rowOf(List<DoseHistory> page, int index) {
+        int offset = index % PAGE_SIZE;
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    private static DoseHistory cursorOf(DoseHistory row) {
+        DoseHistory cursor = new DoseHistory();
+        cursor.setId(row.getId());
+        cursor.setScheduledTime(row.getScheduledTime());
+        return cursor;
+    }
+
+    private static <V> Map<Integer, V> lruMap(int capacity) {
+        return new LinkedHashMap<Integer, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+}
@@ -2,28 +2,93 @@ package com.example.controller;
 
 import com.example.database.DatabaseManager;
 import com.example.model.Medicine;
+import com.example.utils.AsyncUtils;
+import com.example.utils.DataChangeBus;
+import com.example.utils.DataChangeEvent;
 import com.example.utils.DataChangeListener;
+import com.example.utils.IntObjectMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 public class MedicineController {
     private static final Logger logger = LoggerFactory.getLogger(MedicineController.class);
+    private static final Comparator<Medicine> BY_NAME = Comparator.comparing(Medicine::getName);
     private DatabaseManager dbManager;
-    private List<Medicine> medicines;
-    private List<DataChangeListener> listeners = new ArrayList<>();
+    // Replaced on every write, never mutated (nor the medicines in it), so readers on any thread
+    // see a consistent list and indexes without copying or locking
+    private volatile Catalog catalog = new Catalog(new ArrayList<>());
+    // Bumped on every change to names or schedules (not stock), so derived plans know when they are stale
+    private final AtomicLong scheduleVersion = new AtomicLong();
+    // Database data_version the cache was loaded at; a different value means another process wrote
+    private volatile long syncedDataVersion = -1;
 
     public MedicineController() {
-        this.dbManager = DatabaseManager.getInstance();
-        this.medicines = new ArrayList<>();
+        this(DatabaseManager.getInstance());
+    }
+
+    /**
+     * Work against a specific database (benchmarks, tools)
+     */
+    public MedicineController(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
         loadMedicines();
     }
 
     public void loadMedicines() {
-        this.medicines = dbManager.getAllMedicines();
+        // Under the lock that guards every catalog swap, so a patch copied from an older
+        // catalog can never be written back over the reload
+        synchronized (this) {
+            syncedDataVersion = dbManager.getExternalDataVersion(); // before loading, so a concurrent write is seen next time
+            this.catalog = new Catalog(dbManager.getAllMedicines());
+        }
+        scheduleVersion.incrementAndGet();
+    }
+
+    /**
+     * Reload the catalog only if another process changed the database since it was loaded.
+     * Writes made through this controller patch the cache and never need this.
+     * @return true if the catalog was reloaded
+     */
+    public boolean reloadIfChanged() {
+        synchronized (this) {
+            long version = dbManager.getExternalDataVersion();
+            if (version < 0 || version == syncedDataVersion) {
+                return false; // unchanged, or cannot tell
+            }
+            loadMedicines();
+        }
+        publish(DataChangeEvent.reloaded(DataChangeEvent.Topic.MEDICINE));
+        return true;
+    }
+
+    /**
+     * Changes whenever medicines or their schedules are added, edited, removed or reloaded;
+     * stock changes leave it alone
+     */
+    public long getScheduleVersion() {
+        return scheduleVersion.get();
+    }
+
+    /**
+     * Reload the catalog in the background and notify listeners when done
+     */
+    public CompletableFuture<Void> reloadAsync() {
+        return AsyncUtils.runAsync(() -> {
+            loadMedicines();
+            publish(DataChangeEvent.reloaded(DataChangeEvent.Topic.MEDICINE));
+        });
     }
 
     public int addMedicine(Medicine medicine) {
@@ -33,36 +98,65 @@ public class MedicineController {
         
         int id = dbManager.addMedicine(medicine);
         if (id > 0) {
-            medicine.setId(id);
-            // Re-fetch to get schedules properly set up if any ID generation happened
-            medicines.add(medicine); 
-            notifyMedicineDataChanged();
+            medicine.setId(id); // its schedules got their ids from the insert
+            if (!reloadIfChanged()) {
+                putCached(new Medicine(medicine));
+            }
+            publish(DataChangeEvent.added(DataChangeEvent.Topic.MEDICINE, id, getMedicineById(id)));
         }
         return id;
     }
 
+    public CompletableFuture<Integer> addMedicineAsync(Medicine medicine) {
+        return AsyncUtils.supplyAsync(() -> addMedicine(medicine));
+    }
+
     public boolean updateMedicine(Medicine medicine) {
         if (medicine == null || medicine.getId() <= 0) return false;
 
+        Medicine before = getMedicineById(medicine.getId());
         boolean success = dbManager.updateMedicine(medicine);
         if (success) {
-             loadMedicines(); // Reload to refresh everything
-             notifyMedicineDataChanged();
+            // Patch just this medicine; the update set the stored ids on its schedules
+            if (!reloadIfChanged()) {
+                putCached(new Medicine(medicine));
+            }
+            publish(DataChangeEvent.updated(DataChangeEvent.Topic.MEDICINE, medicine.getId(),
+                    before, getMedicineById(medicine.getId())));
         }
         return success;
     }
 
+    public CompletableFuture<Boolean> updateMedicineAsync(Medicine medicine) {
+        return AsyncUtils.supplyAsync(() -> updateMedicine(medicine));
+    }
+
     public boolean deleteMedicine(int medicineId) {
+        Medicine before = getMedicineById(medicineId);
         boolean success = dbManager.deleteMedicine(medicineId);
         if (success) {
-            medicines.removeIf(m -> m.getId() == medicineId);
-            notifyMedicineDataChanged();
+            synchronized (this) {
+                List<Medicine> updated = new ArrayList<>(catalog.medicines);
+                updated.removeIf(m -> m.getId() == medicineId);
+                catalog = new Catalog(updated);
+            }
+            scheduleVersion.incrementAndGet();
+            publish(DataChangeEvent.removed(DataChangeEvent.Topic.MEDICINE, medicineId, before));
         }
         return success;
     }
 
+    public CompletableFuture<Boolean> deleteMedicineAsync(int medicineId) {
+        return AsyncUtils.supplyAsync(() -> deleteMedicine(medicineId));
+    }
+
+    /**
+     * Current snapshot of all medicines in name order. Read-only and never changed afterwards:
+     * writes publish a new snapshot, so hold on to it as long as needed, but do not modify
+     * the medicines in it (edit a copy and save it through this controller).
+     */
     public List<Medicine> getAllMedicines() {
-        return new ArrayList<>(medicines); // Return copy
+        return catalog.medicines;
     }
 
     public List<Medicine> searchMedicines(String query, String frequency, String meal) {
@@ -71,45 +165,191 @@ public class MedicineController {
         }
         return dbManager.searchMedicines(query, frequency, meal);
     }
+
+    /**
+     * Whether the medicine would pass the given search filters; checked in memory
+     */
+    public boolean matchesSearch(Medicine m, String query, String frequency, String meal) {
+        return DatabaseManager.matchesSearch(m, query, frequency, meal);
+    }
+
+    public CompletableFuture<List<Medicine>> searchMedicinesAsync(String query, String frequency, String meal) {
+        return AsyncUtils.supplyAsync(() -> searchMedicines(query, frequency, meal));
+    }
     
     // Inventory Management
     public boolean updateStock(int medicineId, int newQuantity, String reason) {
         boolean success = dbManager.updateStock(medicineId, newQuantity, reason);
         if(success) {
-            loadMedicines();
-            notifyMedicineDataChanged();
+            // Patch the cached medicine; a full reload would also invalidate every reminder plan
+            patchStock(medicineId, newQuantity);
         }
         return success;
     }
 
-    // Observer Pattern
+    public CompletableFuture<Boolean> updateStockAsync(int medicineId, int newQuantity, String reason) {
+        return AsyncUtils.supplyAsync(() -> updateStock(medicineId, newQuantity, reason));
+    }
+
+    /**
+     * Add delta to stock (negative to consume). Patches the cached medicine
+     * instead of reloading the catalog. Returns the new quantity, or -1 on failure.
+     */
+    public int adjustStock(int medicineId, int delta, String reason) {
+        int newQuantity = dbManager.adjustStock(medicineId, delta, reason);
+        if (newQuantity >= 0) {
+            patchStock(medicineId, newQuantity);
+        }
+        return newQuantity;
+    }
+
+    public CompletableFuture<Integer> adjustStockAsync(int medicineId, int delta, String reason) {
+        return AsyncUtils.supplyAsync(() -> adjustStock(medicineId, delta, reason));
+    }
+
+    // Observer Pattern: medicine and inventory (stock) changes, delivered on the EDT once per frame
     public void addDataChangeListener(DataChangeListener listener) {
-        listeners.add(listener);
+        DataChangeBus.shared().subscribe(listener, DataChangeEvent.Topic.MEDICINE);
+        DataChangeBus.shared().subscribe(listener, DataChangeEvent.Topic.INVENTORY);
     }
     
     public void removeDataChangeListener(DataChangeListener listener) {
-        listeners.remove(listener);
+        DataChangeBus.shared().unsubscribe(listener, DataChangeEvent.Topic.MEDICINE);
+        DataChangeBus.shared().unsubscribe(listener, DataChangeEvent.Topic.INVENTORY);
     }
     
-    private void notifyMedicineDataChanged() {
-        for (DataChangeListener listener : listeners) {
-            listener.onMedicineDataChanged();
+    // Add or replace one cached medicine (copy-on-write), keeping the list in name order like the database.
+    // Rebuilds the catalog: these are user edits, rare next to stock changes, and may move the medicine
+    private void putCached(Medicine medicine) {
+        synchronized (this) {
+            List<Medicine> updated = new ArrayList<>(catalog.medicines);
+            updated.removeIf(m -> m.getId() == medicine.getId());
+            int at = Collections.binarySearch(updated, medicine, BY_NAME);
+            updated.add(at < 0 ? -at - 1 : at, medicine);
+            catalog = new Catalog(updated);
         }
+        scheduleVersion.incrementAndGet();
+    }
+
+    // Swap in a copy with the new stock; names and schedules are unchanged, so no plan goes stale.
+    // The new catalog shares the old one's list and indexes, so this does not copy the catalog
+    private void patchStock(int medicineId, int newQuantity) {
+        Medicine before;
+        Medicine after;
+        synchronized (this) {
+            before = getMedicineById(medicineId);
+            if (before == null) {
+                return;
+            }
+            after = new Medicine(before);
+            after.setStockQuantity(newQuantity);
+            catalog = catalog.withPatched(after);
+        }
+        publish(DataChangeEvent.updated(DataChangeEvent.Topic.INVENTORY, medicineId, before, after));
+    }
+
+    private void publish(DataChangeEvent event) {
+        DataChangeBus.shared().publish(event);
     }
 
     public List<Medicine> getLowStockMedicines() {
-        return medicines.stream()
+        return catalog.medicines.stream()
             .filter(m -> m.getStockQuantity() <= m.getLowStockThreshold())
             .collect(Collectors.toList());
     }
 
     public int getTotalMedicinesCount() {
-        return medicines.size();
+        return catalog.medicines.size();
     }
     
     public Medicine getMedicineById(int id) {
-        return medicines.stream()
-            .filter(m -> m.getId() == id)
-            .findFirst()
-            .orElse(null);
-    }}
\ No newline at end of file
+        return catalog.byId(id);
+    }
+
+    /**
+     * The medicine with exactly this name (the first in name order if several share it), or null
+     */
+    public Medicine getMedicineByName(String name) {
+        return name != null ? catalog.byName(name) : null;
+    }
+
+    /**
+     * The cached medicines with their id and name indexes, never modified, so a lookup is one
+     * hash probe and always agrees with the list. A stock change makes a new catalog that shares
+     * this one's list and indexes and only records the changed medicines in a small overlay by id,
+     * so it costs O(overlay) rather than O(n); the overlay is folded into fresh indexes once it
+     * reaches MAX_PATCHES, an O(n) rebuild amortized over that many changes.
+     */
+    private static final class Catalog {
+        private static final int MAX_PATCHES = 256;
+
+        // The list in name order with the overlay applied
+        final List<Medicine> medicines;
+        private final List<Medicine> base;
+        private final IntObjectMap<Medicine> byId;
+        private final Map<String, Medicine> byName;
+        // Replacements for base medicines with the same id, name and position
+        private final IntObjectMap<Medicine> patched;
+
+        // Takes ownership of the list
+        Catalog(List<Medicine> medicines) {
+            this.base = Collections.unmodifiableList(medicines);
+            this.byId = new IntObjectMap<>(medicines.size());
+            this.byName = new HashMap<>(medicines.size() * 2);
+            for (Medicine m : medicines) {
+                byId.put(m.getId(), m);
+                if (m.getName() != null) {
+                    byName.putIfAbsent(m.getName(), m);
+                }
+            }
+            this.patched = new IntObjectMap<>();
+            this.medicines = base;
+        }
+
+        private Catalog(Catalog shared, IntObjectMap<Medicine> patched) {
+            this.base = shared.base;
+            this.byId = shared.byId;
+            this.byName = shared.byName;
+            this.patched = patched;
+            this.medicines = new PatchedList();
+        }
+
+        /**
+         * A catalog with this medicine replaced; its name must be unchanged so the order still holds
+         */
+        Catalog withPatched(Medicine medicine) {
+            IntObjectMap<Medicine> next = new IntObjectMap<>(patched);
+            next.put(medicine.getId(), medicine);
+            Catalog patchedCatalog = new Catalog(this, next);
+            return next.size() < MAX_PATCHES ? patchedCatalog : new Catalog(new ArrayList<>(patchedCatalog.medicines));
+        }
+
+        Medicine byId(int id) {
+            Medicine m = patched.get(id);
+            return m != null ? m : byId.get(id);
+        }
+
+        Medicine byName(String name) {
+            Medicine m = byName.get(name);
+            return m != null ? current(m) : null;
+        }
+
+        private Medicine current(Medicine m) {
+            Medicine replacement = patched.get(m.getId());
+            return replacement != null ? replacement : m;
+        }
+
+        // Read-only view of the base list through the overlay
+        private final class PatchedList extends AbstractList<Medicine> implements RandomAccess {
+            @Override
+            public Medicine get(int index) {
+                return current(base.get(index));
+            }
+
+            @Override
+            public int size() {
+                return base.size();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -4,24 +4,31 @@ import com.example.model.Medicine;
 import com.example.model.Schedule;
 import com.example.model.Reminder;
 import com.example.model.DoseHistory;
+import com.example.utils.AsyncUtils;
+import com.example.utils.DataChangeBus;
+import com.example.utils.DataChangeEvent;
 import com.example.utils.DataChangeListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 public class ReminderController {
     private static final Logger logger = LoggerFactory.getLogger(ReminderController.class);
+    // A dose recorded this close to a reminder's time counts for that reminder
+    private static final Duration DOSE_MATCH_WINDOW = Duration.ofHours(1);
     private MedicineController medicineController;
     private HistoryController historyController;
-    private List<Reminder> dailyReminders = new ArrayList<>();
-    private List<DataChangeListener> listeners = new ArrayList<>();
+    // Rebuilt and swapped as a whole, so readers on any thread see a complete plan
+    private volatile DailyPlan plan;
 
     public ReminderController() { }
 
@@ -37,27 +44,45 @@ public class ReminderController {
         this.historyController = historyController;
     }
     
+    /**
+     * Rebuild today's reminders from the database now and tell listeners
+     */
     public void generateDailyReminders() {
         if(medicineController == null) return;
-        
-        dailyReminders.clear();
+        synchronized (this) {
+            plan = buildPlan(LocalDate.now());
+        }
+        DataChangeBus.shared().publish(DataChangeEvent.reloaded(DataChangeEvent.Topic.REMINDER));
+    }
+
+    // Versions are read before loading, so a change made mid-build leaves the plan stale
+    private DailyPlan buildPlan(LocalDate date) {
+        long scheduleVersion = medicineController.getScheduleVersion();
+        long historyVersion = historyController != null ? historyController.getVersion() : 0;
+        List<Reminder> reminders = new ArrayList<>();
         List<Medicine> medicines = medicineController.getAllMedicines();
-        LocalDate today = LocalDate.now();
+        DoseStatusIndex doses = loadDoses(date);
         
         for(Medicine m : medicines) {
             for(Schedule s : m.getSchedules()) {
-                LocalDateTime dueTime = calculateDueTime(today, s);
+                LocalDateTime dueTime = calculateDueTime(date, s);
                 if(dueTime != null) {
                     Reminder r = new Reminder(m.getName(), dueTime);
                     r.setId(s.getId() * 10000 + dueTime.getHour()); // Pseudo ID
                     // Check status
-                    updateStatus(r, m.getId());
-                    dailyReminders.add(r);
+                    updateStatus(r, m.getId(), doses);
+                    reminders.add(r);
                 }
             }
         }
-        Collections.sort(dailyReminders, (a, b) -> a.getReminderTime().compareTo(b.getReminderTime()));
-        notifyDataChanged();
+        Collections.sort(reminders, (a, b) -> a.getReminderTime().compareTo(b.getReminderTime()));
+        return new DailyPlan(date, scheduleVersion, historyVersion, reminders);
+    }
+
+    private boolean isCurrent(DailyPlan p, LocalDate today) {
+        return p != null && p.date.equals(today)
+                && p.scheduleVersion == medicineController.getScheduleVersion()
+                && p.historyVersion == (historyController != null ? historyController.getVersion() : 0);
     }
     
     private LocalDateTime calculateDueTime(LocalDate date, Schedule s) {
@@ -76,30 +101,58 @@ public class ReminderController {
         return LocalDateTime.of(date, time);
     }
     
-    private void updateStatus(Reminder r, int medicineId) {
-        if(historyController == null) return;
-        List<DoseHistory> history = historyController.getHistoryList();
+    // One range query for every dose that can match a reminder on this date
+    private DoseStatusIndex loadDoses(LocalDate date) {
+        if(historyController == null) return null;
+        LocalDateTime start = date.atStartOfDay();
+        return DoseStatusIndex.of(historyController.getHistoryBetween(
+                start.minus(DOSE_MATCH_WINDOW), start.plusDays(1).plus(DOSE_MATCH_WINDOW)));
+    }
+    
+    private void updateStatus(Reminder r, int medicineId, DoseStatusIndex doses) {
+        if(doses == null) return;
         // Check if there is a history for this medicine ~around~ this time today
-        boolean taken = history.stream().anyMatch(h -> 
-            h.getMedicineId() == medicineId && 
-            h.getScheduledTime() != null &&
-            Math.abs(java.time.Duration.between(h.getScheduledTime(), r.getReminderTime()).toMinutes()) < 60
-        );
+        boolean taken = doses.hasDoseNear(medicineId, r.getReminderTime(), DOSE_MATCH_WINDOW);
         
         if(taken) r.setStatus(Reminder.Status.TAKEN);
         else if(r.getReminderTime().isBefore(LocalDateTime.now())) r.setStatus(Reminder.Status.MISSED);
         else r.setStatus(Reminder.Status.PENDING);
-        
-        notifyDataChanged();
     }
     
+    /**
+     * Today's reminders, oldest first. Served from the cached plan, which is rebuilt only
+     * after the date, the medicine schedules or the dose history have changed; never
+     * notifies listeners.
+     */
     public List<Reminder> getDailyReminders() {
-         generateDailyReminders(); // Refresh on get
-         return dailyReminders;
+        if(medicineController == null) return Collections.emptyList();
+        LocalDate today = LocalDate.now();
+        DailyPlan current = plan;
+        if (!isCurrent(current, today)) {
+            synchronized (this) {
+                current = plan;
+                if (!isCurrent(current, today)) {
+                    current = buildPlan(today);
+                    plan = current;
+                }
+            }
+        }
+        current.markOverdue(LocalDateTime.now());
+        return current.reminders;
+    }
+
+    public CompletableFuture<List<Reminder>> getDailyRemindersAsync() {
+        return AsyncUtils.supplyAsync(this::getDailyReminders);
     }
     
+    /**
+     * Pending reminders in the last built plan; never queries the database
+     */
     public long getPendingCount() {
-        return dailyReminders.stream()
+        DailyPlan current = plan;
+        if (current == null) return 0;
+        current.markOverdue(LocalDateTime.now());
+        return current.reminders.stream()
             .filter(r -> r.getStatus() == Reminder.Status.PENDING)
             .count();
     }
@@ -114,20 +167,64 @@ public class ReminderController {
         if(medicineController != null) {
             // Find schedule to get dose amount? 
             // Simplified: decrease by 1 or use schedule info if attached
-            int newQty = Math.max(0, m.getStockQuantity() - 1);
-            medicineController.updateStock(m.getId(), newQty, "Dose Taken");
+            // Atomic decrement in the database; stays untouched when already out of stock
+            medicineController.adjustStock(m.getId(), -1, "Dose Taken");
         }
+        Reminder before = new Reminder(r);
         r.setStatus(Reminder.Status.TAKEN);
-        notifyDataChanged();
+        DataChangeBus.shared().publish(DataChangeEvent.updated(DataChangeEvent.Topic.REMINDER, r.getId(),
+                before, new Reminder(r)));
+    }
+
+    public CompletableFuture<Void> markAsTakenAsync(Reminder r, Medicine m) {
+        return AsyncUtils.runAsync(() -> markAsTaken(r, m));
     }
     
     public void addDataChangeListener(DataChangeListener listener) {
-        listeners.add(listener);
+        DataChangeBus.shared().subscribe(listener, DataChangeEvent.Topic.REMINDER);
     }
-    
-    private void notifyDataChanged() {
-        for (DataChangeListener l : listeners) {
-            l.onReminderDataChanged();
+
+    /**
+     * One day's reminders and the data versions they were built from
+     */
+    private static final class DailyPlan {
+        final LocalDate date;
+        final long scheduleVersion;
+        final long historyVersion;
+        final List<Reminder> reminders;
+        // Earliest pending reminder: until then no status can change with the clock
+        private LocalDateTime nextOverdue;
+
+        DailyPlan(LocalDate date, long scheduleVersion, long historyVersion, List<Reminder> reminders) {
+            this.date = date;
+            this.scheduleVersion = scheduleVersion;
+            this.historyVersion = historyVersion;
+            this.reminders = Collections.unmodifiableList(reminders);
+            this.nextOverdue = earliestPending();
+        }
+
+        /**
+         * Turn pending reminders whose time has passed into MISSED; a no-op until the next one is due
+         */
+        synchronized void markOverdue(LocalDateTime now) {
+            if (nextOverdue == null || now.isBefore(nextOverdue)) {
+                return;
+            }
+            for (Reminder r : reminders) {
+                if (r.getStatus() == Reminder.Status.PENDING && r.getReminderTime().isBefore(now)) {
+                    r.setStatus(Reminder.Status.MISSED);
+                }
+            }
+            nextOverdue = earliestPending();
+        }
+
+        private LocalDateTime earliestPending() {
+            for (Reminder r : reminders) {
+                if (r.getStatus() == Reminder.Status.PENDING) {
+                    return r.getReminderTime(); // sorted, so the first one is the earliest
+                }
+            }
+            return null;
         }
     }
 }
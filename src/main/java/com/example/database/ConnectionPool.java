@@ -0,0 +1,217 @@
+package com.example.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConnectionPool Class
+ * Small bounded pool of SQLite connections used by DatabaseManager.
+ * SQLite allows one writer at a time, so there is a single writer connection guarded
+ * by a lock, plus a few reader connections that run concurrently under WAL mode.
+ * Leases are per-thread and re-entrant: nested calls on one thread share a connection,
+ * and reads made while the thread holds the writer go through the writer.
+ * Each connection carries its own StatementCache; hit/miss counters are pool-wide.
+ */
+class ConnectionPool {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    private final StatementCache writer;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final List<StatementCache> readers;
+    private final BlockingQueue<StatementCache> idleReaders;
+    private final LongAdder statementHits;
+    private final LongAdder statementMisses;
+    private final ThreadLocal<Lease> threadReadLease = new ThreadLocal<>();
+    private final int busyTimeoutMs;
+    private volatile boolean closed;
+
+    private ConnectionPool(Connection writer, List<Connection> readers, int busyTimeoutMs) {
+        this.statementHits = new LongAdder();
+        this.statementMisses = new LongAdder();
+        this.writer = newCache(writer);
+        this.readers = new ArrayList<>();
+        for (Connection reader : readers) {
+            this.readers.add(newCache(reader));
+        }
+        this.idleReaders = new ArrayBlockingQueue<>(readers.size(), false, this.readers);
+        this.busyTimeoutMs = busyTimeoutMs;
+    }
+
+    private StatementCache newCache(Connection conn) {
+        return new StatementCache(conn, STATEMENT_CACHE_SIZE, statementHits, statementMisses);
+    }
+
+    /**
+     * Open the writer and readerCount reader connections.
+     */
+    static ConnectionPool open(String url, int readerCount, int busyTimeoutMs) throws SQLException {
+        Connection writer = DriverManager.getConnection(url);
+        List<Connection> readers = new ArrayList<>();
+        try {
+            configure(writer, busyTimeoutMs);
+            try (Statement stmt = writer.createStatement()) {
+                // WAL lets readers run while the writer commits; the mode is stored in the file
+                stmt.execute("PRAGMA journal_mode = WAL");
+            }
+            for (int i = 0; i < readerCount; i++) {
+                Connection reader = DriverManager.getConnection(url);
+                readers.add(reader);
+                configure(reader, busyTimeoutMs);
+                try (Statement stmt = reader.createStatement()) {
+                    stmt.execute("PRAGMA query_only = ON");
+                }
+            }
+        } catch (SQLException e) {
+            closeQuietly(writer);
+            readers.forEach(ConnectionPool::closeQuietly);
+            throw e;
+        }
+        return new ConnectionPool(writer, readers, busyTimeoutMs);
+    }
+
+    private static void configure(Connection conn, int busyTimeoutMs) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // Both settings are per connection, not per database
+            stmt.execute("PRAGMA foreign_keys = ON");
+            stmt.execute("PRAGMA busy_timeout = " + busyTimeoutMs);
+        }
+    }
+
+    /**
+     * Lease a connection for reading.
+     */
+    Lease read() throws SQLException {
+        ensureOpen();
+        if (writeLock.isHeldByCurrentThread()) {
+            // Stay on the writer so the read sees this thread's uncommitted changes
+            return write();
+        }
+        Lease current = threadReadLease.get();
+        if (current != null) {
+            current.depth++;
+            return current;
+        }
+        StatementCache conn;
+        try {
+            conn = idleReaders.poll(busyTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a reader connection", e);
+        }
+        if (conn == null) {
+            throw new SQLException("Timed out waiting for a reader connection");
+        }
+        Lease lease = new Lease(conn, false);
+        threadReadLease.set(lease);
+        return lease;
+    }
+
+    /**
+     * Lease the writer connection. Blocks while another thread holds it.
+     */
+    Lease write() throws SQLException {
+        ensureOpen();
+        try {
+            if (!writeLock.tryLock(busyTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for the writer connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the writer connection", e);
+        }
+        return new Lease(writer, true);
+    }
+
+    long getStatementCacheHits() {
+        return statementHits.sum();
+    }
+
+    long getStatementCacheMisses() {
+        return statementMisses.sum();
+    }
+
+    /**
+     * Close every connection. Leases taken afterwards fail.
+     */
+    void close() {
+        closed = true;
+        writeLock.lock();
+        try {
+            closeCache(writer);
+        } finally {
+            writeLock.unlock();
+        }
+        readers.forEach(ConnectionPool::closeCache);
+    }
+
+    private static void closeCache(StatementCache cache) {
+        cache.clear();
+        closeQuietly(cache.connection());
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("Database is disconnected");
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            logger.error("Error closing pooled connection", e);
+        }
+    }
+
+    /**
+     * A borrowed connection, returned to the pool on close().
+     */
+    final class Lease implements AutoCloseable {
+        private final StatementCache cache;
+        private final boolean writerLease;
+        private int depth = 1;
+
+        private Lease(StatementCache cache, boolean writerLease) {
+            this.cache = cache;
+            this.writerLease = writerLease;
+        }
+
+        Connection connection() {
+            return cache.connection();
+        }
+
+        /**
+         * Cached prepared statement for this connection; do not close it.
+         */
+        PreparedStatement prepare(String sql) throws SQLException {
+            return cache.prepare(sql);
+        }
+
+        @Override
+        public void close() {
+            if (writerLease) {
+                writeLock.unlock();
+                return;
+            }
+            if (--depth == 0) {
+                threadReadLease.remove();
+                idleReaders.offer(cache);
+            }
+        }
+    }
+}
@@ -7,48 +7,157 @@ import com.example.model.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.sql.Types;
+import java.text.Normalizer;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 /**
  * DatabaseManager Class
  * Handles all SQLite database operations for DailyDose application.
- * Uses JDBC connection pooling with a singleton pattern.
+ * Uses a small connection pool (one writer, several WAL readers) with a singleton pattern.
  * Refactored for normalized schema and enhanced dosage tracking.
  */
 public class DatabaseManager {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseManager.class);
     private static final String DB_URL = "jdbc:sqlite:daily_dose_v2.db";
+    private static final int READER_POOL_SIZE = 4;
+    private static final int BUSY_TIMEOUT_MS = 5000;
+    // Group commit for queued dose history: up to this many rows per transaction...
+    private static final int HISTORY_BATCH_SIZE = 1000;
+    // ...written at most this long after the first of them was queued
+    private static final long HISTORY_LINGER_MS = 5;
     private static DatabaseManager instance;
-    private Connection connection;
+    private final String dbUrl;
+    private ConnectionPool pool;
+    private volatile WriteBehindQueue<DoseHistory> historyQueue;
+
+    // Medicine columns plus its schedules, one row per schedule (LEFT JOIN keeps medicines without any)
+    private static final String MEDICINE_GRAPH_SELECT =
+            "SELECT m.id, m.name, m.stock_quantity, m.low_stock_threshold, m.dose_unit, m.instructions, " +
+            "s.id AS schedule_id, s.time_of_day, s.meal_timing, s.dose_amount, s.custom_note " +
+            "FROM medicines m LEFT JOIN medicine_schedules s ON s.medicine_id = m.id ";
+
+    // Statements issued by this class. Every one is checked by verifyQueryPlans() at startup.
+    // Inserts whose keys are needed hand them back with RETURNING, in the same statement
+    private static final String INSERT_MEDICINE_SQL = "INSERT INTO medicines(name, stock_quantity, low_stock_threshold, dose_unit, instructions) VALUES(?, ?, ?, ?, ?) RETURNING id";
+    private static final String INSERT_SCHEDULE_SQL = "INSERT INTO medicine_schedules(medicine_id, time_of_day, meal_timing, dose_amount, custom_note) VALUES(?, ?, ?, ?, ?) RETURNING id";
+    private static final String SELECT_ALL_MEDICINES_SQL = MEDICINE_GRAPH_SELECT + "ORDER BY m.name, s.id";
+    private static final String SELECT_MEDICINE_BY_ID_SQL = MEDICINE_GRAPH_SELECT + "WHERE m.id = ? ORDER BY s.id";
+    private static final String UPDATE_MEDICINE_SQL = "UPDATE medicines SET name = ?, stock_quantity = ?, low_stock_threshold = ?, dose_unit = ?, instructions = ?, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id = ? RETURNING created_at, updated_at";
+    // Schedules changed but the medicine row did not
+    private static final String TOUCH_MEDICINE_SQL = "UPDATE medicines SET updated_at = CURRENT_TIMESTAMP WHERE id = ? RETURNING created_at, updated_at";
+    private static final String SELECT_STOCK_SQL = "SELECT stock_quantity FROM medicines WHERE id = ?";
+    private static final String SET_STOCK_SQL = "UPDATE medicines SET stock_quantity = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+    private static final String ADJUST_STOCK_SQL = "UPDATE medicines SET stock_quantity = stock_quantity + ?, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id = ? AND stock_quantity + ? >= 0 RETURNING stock_quantity";
+    private static final String DATA_VERSION_SQL = "PRAGMA data_version";
+    private static final String INSERT_INVENTORY_LOG_SQL = "INSERT INTO inventory_logs(medicine_id, change_amount, reason) VALUES(?, ?, ?)";
+    private static final String UPDATE_SCHEDULE_SQL = "UPDATE medicine_schedules SET time_of_day = ?, meal_timing = ?, dose_amount = ?, custom_note = ? WHERE id = ?";
+    private static final String DELETE_SCHEDULE_SQL = "DELETE FROM medicine_schedules WHERE id = ?";
+    private static final String DELETE_MEDICINE_SQL = "DELETE FROM medicines WHERE id = ?";
+    private static final String AUTHENTICATE_USER_SQL = "SELECT * FROM users WHERE username = ? AND password_hash = ?";
+    private static final String INSERT_USER_SQL = "INSERT INTO users(username, password_hash, role, full_name) VALUES(?, ?, ?, ?) RETURNING id";
+    private static final String INSERT_DOSE_HISTORY_SQL = "INSERT INTO dose_history(medicine_id, scheduled_time, taken_time, status, notes) VALUES(?, ?, ?, ?, ?) RETURNING id";
+    // Join with medicines to get name; columns are read by position in mapResultSetToDoseHistory()
+    private static final String DOSE_HISTORY_SELECT = "SELECT h.id, h.medicine_id, m.name as medicine_name, h.scheduled_time, h.taken_time, h.status, h.notes " +
+            "FROM dose_history h LEFT JOIN medicines m ON h.medicine_id = m.id ";
+    // History is listed newest first; id breaks ties so (scheduled_time, id) is a unique keyset cursor
+    private static final String SELECT_ALL_DOSE_HISTORY_SQL = DOSE_HISTORY_SELECT + "ORDER BY h.scheduled_time DESC, h.id DESC";
+    private static final String SELECT_DOSE_HISTORY_BETWEEN_SQL = DOSE_HISTORY_SELECT +
+            "WHERE h.scheduled_time >= ? AND h.scheduled_time < ? ORDER BY h.scheduled_time, h.id";
+    private static final String COUNT_DOSE_HISTORY_SQL = "SELECT COUNT(*) FROM dose_history";
+    private static final String COUNT_DOSE_HISTORY_BY_STATUS_SQL = "SELECT COUNT(*) FROM dose_history WHERE status = ?";
+    private static final String COUNT_DOSE_HISTORY_BETWEEN_SQL = "SELECT COUNT(*) FROM dose_history WHERE status = ? AND scheduled_time >= ? AND scheduled_time < ?";
+
+    private static final String[] DOSE_HISTORY_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_dose_history_medicine_time ON dose_history(medicine_id, scheduled_time)",
+            "CREATE INDEX IF NOT EXISTS idx_dose_history_scheduled ON dose_history(scheduled_time)"
+    };
+
+    // Secondary indexes for the lookups above (primary keys and UNIQUE columns are indexed already)
+    private static final String[] INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_schedules_medicine ON medicine_schedules(medicine_id)",
+            "CREATE INDEX IF NOT EXISTS idx_schedules_slot ON medicine_schedules(time_of_day, meal_timing)",
+            "CREATE INDEX IF NOT EXISTS idx_schedules_meal ON medicine_schedules(meal_timing)",
+            DOSE_HISTORY_INDEXES[0],
+            DOSE_HISTORY_INDEXES[1],
+            "CREATE INDEX IF NOT EXISTS idx_inventory_logs_medicine_time ON inventory_logs(medicine_id, timestamp)"
+    };
+
+    // Text search returns at most this many medicines
+    public static final int MAX_SEARCH_RESULTS = 200;
+    // Combining marks that unicode61 strips when it folds diacritics
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    // Queries whose words are all shorter than this match too much for ranking to pay off
+    private static final int MIN_RANKED_WORD_LENGTH = 4;
+
+    // Trigger bodies for medicines_fts; an external-content delete must repeat the old values
+    private static final String FTS_INSERT_NEW =
+            "INSERT INTO medicines_fts(rowid, name, instructions, dose_unit) VALUES (new.id, new.name, new.instructions, new.dose_unit);";
+    private static final String FTS_DELETE_OLD =
+            "INSERT INTO medicines_fts(medicines_fts, rowid, name, instructions, dose_unit) VALUES ('delete', old.id, old.name, old.instructions, old.dose_unit);";
+
+    // Set -Ddailydose.strictQueryPlans=true to fail startup when a statement needs a full table scan
+    private static final String STRICT_QUERY_PLANS_PROPERTY = "dailydose.strictQueryPlans";
+
+    private DatabaseManager(String dbUrl) {
+        this.dbUrl = dbUrl;
+    }
+
     /**
      * Singleton pattern - get instance of DatabaseManager
      */
     public static synchronized DatabaseManager getInstance() {
         if (instance == null) {
-            instance = new DatabaseManager();
+            instance = new DatabaseManager(DB_URL);
             instance.connect();
             instance.initializeDatabase();
+            instance.checkQueryPlans();
         }
         return instance;
     }
 
+    /**
+     * Open a standalone manager on another database file (benchmarks, tools).
+     * The caller owns it and must call disconnect() when done.
+     */
+    public static DatabaseManager open(String dbUrl) {
+        DatabaseManager manager = new DatabaseManager(dbUrl);
+        manager.connect();
+        manager.initializeDatabase();
+        return manager;
+    }
+
     /**
      * Connect to SQLite database
      */
     public void connect() {
         try {
             Class.forName("org.sqlite.JDBC");
-            this.connection = DriverManager.getConnection(DB_URL);
-            logger.info("Database connection established successfully");
+            this.pool = ConnectionPool.open(dbUrl, READER_POOL_SIZE, BUSY_TIMEOUT_MS);
+            this.historyQueue = new WriteBehindQueue<>("dose-history-writer", this::insertDoseHistoryBatch,
+                    HISTORY_BATCH_SIZE, HISTORY_LINGER_MS);
+            logger.info("Database connection pool established successfully ({} readers, 1 writer)", READER_POOL_SIZE);
         } catch (Exception e) {
             logger.error("Error connecting to database", e);
         }
@@ -58,35 +167,113 @@ public class DatabaseManager {
      * Disconnect from database
      */
     public void disconnect() {
-        if (connection != null) {
+        WriteBehindQueue<DoseHistory> queue = historyQueue;
+        if (queue != null) {
+            historyQueue = null;
+            queue.close(); // commits whatever is still queued
+        }
+        if (pool != null) {
+            logger.info("Statement cache: {} hits, {} misses", pool.getStatementCacheHits(), pool.getStatementCacheMisses());
+            pool.close();
+            pool = null;
+            logger.info("Database connections closed");
+        }
+    }
+
+    /**
+     * Hot backup of this database into backupDir while the application keeps running
+     * @param keep backups to retain in backupDir, older ones being deleted, or DatabaseBackup.KEEP_ALL
+     * @param compress write a gzipped ".db.gz" instead of a plain ".db"
+     * @return the backup taken, or null on failure
+     */
+    public DatabaseBackup.Result backup(Path backupDir, int keep, boolean compress, DatabaseBackup.ProgressListener listener) {
+        try {
+            DatabaseBackup.Result result = new DatabaseBackup(dbUrl, backupDir, keep, compress).run(listener);
+            logger.info("Database backed up to {}", result);
+            return result;
+        } catch (SQLException | IOException e) {
+            logger.error("Error backing up database", e);
+        }
+        return null;
+    }
+
+    /**
+     * backup() on a background thread of its own, so a long copy never occupies a DB executor thread
+     * @return completes with the backup taken, or null on failure
+     */
+    public CompletableFuture<DatabaseBackup.Result> backupAsync(Path backupDir, int keep, boolean compress,
+                                                                DatabaseBackup.ProgressListener listener) {
+        return CompletableFuture.supplyAsync(() -> backup(backupDir, keep, compress, listener), work -> {
+            Thread thread = new Thread(work, "database-backup");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    /**
+     * Number of statement lookups served from the per-connection statement caches
+     */
+    public long getStatementCacheHits() {
+        return pool != null ? pool.getStatementCacheHits() : 0;
+    }
+
+    /**
+     * Number of statement lookups that had to prepare (parse) new SQL
+     */
+    public long getStatementCacheMisses() {
+        return pool != null ? pool.getStatementCacheMisses() : 0;
+    }
+
+    /**
+     * Unit of work run on the writer connection by inTransaction()
+     */
+    private interface TransactionWork<T> {
+        T run(ConnectionPool.Lease lease) throws SQLException;
+    }
+
+    /**
+     * Run work on the writer inside one transaction: commit on success, roll back on any failure.
+     * Nested calls on the same thread join the outer transaction.
+     */
+    private <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+        try (ConnectionPool.Lease lease = pool.write()) {
+            Connection conn = lease.connection();
+            if (!conn.getAutoCommit()) {
+                return work.run(lease);
+            }
+            conn.setAutoCommit(false);
             try {
-                connection.close();
-                logger.info("Database connection closed");
-            } catch (SQLException e) {
-                logger.error("Error closing database connection", e);
+                T result = work.run(lease);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
         }
     }
 
     /**
-     * Initialize database tables
+     * Schema history, oldest first. Append new steps with the next version; never edit a released one.
      */
-    private void initializeDatabase() {
-        try (Statement stmt = connection.createStatement()) {
-            // Enable foreign keys
-            stmt.execute("PRAGMA foreign_keys = ON;");
-
-            // 1. Users table
-            stmt.execute("CREATE TABLE IF NOT EXISTS users (" +
+    private static List<Migration> migrations() {
+        List<Migration> list = new ArrayList<>();
+        // Version 1 is the original V2 schema. IF NOT EXISTS lets databases created before
+        // migrations were tracked (user_version 0, tables present) pass through unchanged.
+        list.add(Migration.of(1, "V2 schema",
+                // 1. Users table
+                "CREATE TABLE IF NOT EXISTS users (" +
                     "id INTEGER PRIMARY KEY AUTOINCREMENT," +
                     "username TEXT UNIQUE NOT NULL," +
                     "password_hash TEXT NOT NULL," +
                     "role TEXT NOT NULL DEFAULT 'PATIENT'," + 
                     "full_name TEXT," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)",
 
-            // 2. Medicines table (Normalized: Name and Stock only)
-            stmt.execute("CREATE TABLE IF NOT EXISTS medicines (" +
+                // 2. Medicines table (Normalized: Name and Stock only)
+                "CREATE TABLE IF NOT EXISTS medicines (" +
                     "id INTEGER PRIMARY KEY AUTOINCREMENT," +
                     "name TEXT UNIQUE NOT NULL," +
                     "stock_quantity INTEGER DEFAULT 0," + // Current physical stock
@@ -94,11 +281,11 @@ public class DatabaseManager {
                     "dose_unit TEXT," + // e.g., tablet, ml, pill
                     "instructions TEXT," +
                     "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                    "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+                    "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)",
 
-            // 3. Medicine Schedules (Dosage & Frequency)
-            // One medicine can have multiple schedules (e.g. Morning-BeforeMeal AND Night-AfterMeal)
-            stmt.execute("CREATE TABLE IF NOT EXISTS medicine_schedules (" +
+                // 3. Medicine Schedules (Dosage & Frequency)
+                // One medicine can have multiple schedules (e.g. Morning-BeforeMeal AND Night-AfterMeal)
+                "CREATE TABLE IF NOT EXISTS medicine_schedules (" +
                     "id INTEGER PRIMARY KEY AUTOINCREMENT," +
                     "medicine_id INTEGER NOT NULL," +
                     "time_of_day TEXT NOT NULL," + // MORNING, NOON, NIGHT, CUSTOM
@@ -106,123 +293,251 @@ public class DatabaseManager {
                     "dose_amount REAL DEFAULT 1.0," + // How much to take at this time
                     "custom_time TEXT," + // Specific time if needed example "10:00"
                     "custom_note TEXT," + // For "Custom" option text
-                    "FOREIGN KEY(medicine_id) REFERENCES medicines(id) ON DELETE CASCADE)");
+                    "FOREIGN KEY(medicine_id) REFERENCES medicines(id) ON DELETE CASCADE)",
 
-            // 4. Dose History (Tracking actual intake)
-            stmt.execute("CREATE TABLE IF NOT EXISTS dose_history (" +
+                // 4. Dose History (Tracking actual intake)
+                "CREATE TABLE IF NOT EXISTS dose_history (" +
                     "id INTEGER PRIMARY KEY AUTOINCREMENT," +
                     "medicine_id INTEGER NOT NULL," +
                     "scheduled_time TIMESTAMP," + // When it was supposed to be taken
                     "taken_time TIMESTAMP," + // When it was actually taken
                     "status TEXT NOT NULL," + // TAKEN, MISSED, SKIPPED
                     "notes TEXT," +
-                    "FOREIGN KEY(medicine_id) REFERENCES medicines(id) ON DELETE SET NULL)");
+                    "FOREIGN KEY(medicine_id) REFERENCES medicines(id) ON DELETE SET NULL)",
             
-            // 5. Inventory Transaction Logs (Audit trail)
-            stmt.execute("CREATE TABLE IF NOT EXISTS inventory_logs (" +
+                // 5. Inventory Transaction Logs (Audit trail)
+                "CREATE TABLE IF NOT EXISTS inventory_logs (" +
                     "id INTEGER PRIMARY KEY AUTOINCREMENT," +
                     "medicine_id INTEGER NOT NULL," +
                     "change_amount INTEGER NOT NULL," + // +50 or -1
                     "reason TEXT," + // "Refill", "Dose Taken", "Adjustment"
                     "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                    "FOREIGN KEY(medicine_id) REFERENCES medicines(id) ON DELETE CASCADE)");
+                    "FOREIGN KEY(medicine_id) REFERENCES medicines(id) ON DELETE CASCADE)"));
+
+        list.add(Migration.of(2, "Secondary indexes", INDEXES));
+
+        // Versions 3-5 re-encode dose_history times from ISO text to INTEGER epoch seconds (see encodeTime).
+        // SQLite cannot change a column type, so the rows are copied into a new table in batches and swapped in.
+        list.add(Migration.of(3, "Epoch dose_history table",
+                "CREATE TABLE dose_history_new (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "medicine_id INTEGER NOT NULL," +
+                    "scheduled_time INTEGER," + // Epoch seconds, see encodeTime()
+                    "taken_time INTEGER," +
+                    "status TEXT NOT NULL," +
+                    "notes TEXT," +
+                    "FOREIGN KEY(medicine_id) REFERENCES medicines(id) ON DELETE SET NULL)"));
+        // INSERT OR REPLACE keeps the step repeatable if the upgrade is interrupted
+        list.add(Migration.batched(4, "Copy dose_history as epoch seconds", "dose_history",
+                "INSERT OR REPLACE INTO dose_history_new(id, medicine_id, scheduled_time, taken_time, status, notes) " +
+                "SELECT id, medicine_id, " + isoToEpochSql("scheduled_time") + ", " + isoToEpochSql("taken_time") + ", status, notes " +
+                "FROM dose_history WHERE id > ? AND id <= ?"));
+        list.add(Migration.of(5, "Swap in epoch dose_history",
+                // Carry the AUTOINCREMENT counter over so ids of deleted rows are not reused
+                "DELETE FROM sqlite_sequence WHERE name = 'dose_history_new'",
+                "UPDATE sqlite_sequence SET name = 'dose_history_new' WHERE name = 'dose_history'",
+                "DROP TABLE dose_history",
+                "ALTER TABLE dose_history_new RENAME TO dose_history",
+                DOSE_HISTORY_INDEXES[0],
+                DOSE_HISTORY_INDEXES[1]));
+        // Status-filtered history pages and the per-status counts
+        list.add(Migration.of(6, "dose_history status index",
+                "CREATE INDEX IF NOT EXISTS idx_dose_history_status_time ON dose_history(status, scheduled_time)"));
+        // Full-text index over the searchable medicine columns. External content: the index holds
+        // only tokens and reads column values from medicines; the triggers keep it in step with
+        // every write, and stock updates (which touch none of these columns) never fire them.
+        list.add(Migration.of(7, "Medicine full-text index",
+                "CREATE VIRTUAL TABLE IF NOT EXISTS medicines_fts USING fts5(" +
+                    "name, instructions, dose_unit, " +
+                    "content='medicines', content_rowid='id', " +
+                    "tokenize='unicode61 remove_diacritics 2', " +
+                    "prefix='2 3')", // Extra index entries so 2-3 letter prefixes need not walk every term
+                "CREATE TRIGGER IF NOT EXISTS medicines_fts_insert AFTER INSERT ON medicines BEGIN " +
+                    FTS_INSERT_NEW + " END",
+                "CREATE TRIGGER IF NOT EXISTS medicines_fts_delete AFTER DELETE ON medicines BEGIN " +
+                    FTS_DELETE_OLD + " END",
+                "CREATE TRIGGER IF NOT EXISTS medicines_fts_update AFTER UPDATE OF name, instructions, dose_unit ON medicines BEGIN " +
+                    FTS_DELETE_OLD + " " + FTS_INSERT_NEW + " END",
+                // Default ORDER BY rank: bm25 with a name hit weighing five times an instructions hit
+                "INSERT INTO medicines_fts(medicines_fts, rank) VALUES('rank', 'bm25(10.0, 2.0, 1.0)')",
+                "INSERT INTO medicines_fts(medicines_fts) VALUES('rebuild')"));
+        return list;
+    }
+
+    // strftime() reads ISO-8601 as UTC, matching the wall-clock encoding of encodeTime()
+    private static String isoToEpochSql(String column) {
+        return "CASE WHEN typeof(" + column + ") = 'text' THEN CAST(strftime('%s', " + column + ") AS INTEGER) ELSE " + column + " END";
+    }
 
-            logger.info("Database tables initialized successfully (V2 Schema)");
+    /**
+     * Initialize database tables by applying any pending migrations
+     */
+    private void initializeDatabase() {
+        // foreign_keys, busy_timeout and WAL mode are applied per connection by ConnectionPool
+        try {
+            int version = new SchemaMigrator(pool, migrations()).migrate();
+            logger.info("Database tables initialized successfully (schema version {})", version);
         } catch (SQLException e) {
             logger.error("Error initializing database", e);
         }
     }
 
+    // ============= QUERY PLAN VERIFICATION =============
+
+    /**
+     * Run EXPLAIN QUERY PLAN on every statement this class issues.
+     * @return one message per statement that scans a whole table, empty when all plans use indexes
+     */
+    public List<String> verifyQueryPlans() {
+        List<String> problems = new ArrayList<>();
+        try (ConnectionPool.Lease lease = pool.read()) {
+            for (String sql : allStatements()) {
+                List<String> scans = QueryPlanVerifier.findFullScans(lease.connection(), sql);
+                if (!scans.isEmpty()) {
+                    problems.add(scans + " in: " + sql);
+                }
+            }
+        } catch (SQLException e) {
+            problems.add("Could not verify query plans: " + e.getMessage());
+        }
+        return problems;
+    }
+
+    private void checkQueryPlans() {
+        List<String> problems = verifyQueryPlans();
+        if (problems.isEmpty()) {
+            logger.info("Query plans verified: no full table scans");
+            return;
+        }
+        problems.forEach(p -> logger.error("Full table scan: {}", p));
+        if (Boolean.getBoolean(STRICT_QUERY_PLANS_PROPERTY)) {
+            throw new IllegalStateException("Query plan check failed: " + problems.size() + " statement(s) scan a whole table");
+        }
+    }
+
+    private static List<String> allStatements() {
+        List<String> statements = new ArrayList<>(Arrays.asList(
+                INSERT_MEDICINE_SQL, INSERT_SCHEDULE_SQL, SELECT_ALL_MEDICINES_SQL, SELECT_MEDICINE_BY_ID_SQL,
+                UPDATE_MEDICINE_SQL, TOUCH_MEDICINE_SQL, SELECT_STOCK_SQL, SET_STOCK_SQL, ADJUST_STOCK_SQL, INSERT_INVENTORY_LOG_SQL,
+                UPDATE_SCHEDULE_SQL, DELETE_SCHEDULE_SQL, DELETE_MEDICINE_SQL, AUTHENTICATE_USER_SQL, INSERT_USER_SQL,
+                INSERT_DOSE_HISTORY_SQL, SELECT_ALL_DOSE_HISTORY_SQL, SELECT_DOSE_HISTORY_BETWEEN_SQL,
+                COUNT_DOSE_HISTORY_SQL, COUNT_DOSE_HISTORY_BY_STATUS_SQL, COUNT_DOSE_HISTORY_BETWEEN_SQL));
+        // Every filter combination searchMedicines() can build
+        for (int mask = 0; mask < 16; mask++) {
+            statements.add(buildSearchSql((mask & 1) != 0, (mask & 2) != 0, (mask & 4) != 0, (mask & 8) != 0));
+        }
+        // Every page and key query getDoseHistoryPage(), getDoseHistoryKeyAt() and getDoseHistoryKeyFromOldest() can build
+        for (boolean byStatus : new boolean[]{false, true}) {
+            for (HistoryPosition position : HistoryPosition.values()) {
+                statements.add(buildHistoryPageSql(position, byStatus));
+                statements.add(buildHistoryKeySql(position, byStatus, false));
+            }
+            statements.add(buildHistoryKeySql(HistoryPosition.FIRST, byStatus, true));
+        }
+        return statements;
+    }
+
     // ============= MEDICINE OPERATIONS =============
 
+    /**
+     * Insert a medicine with its schedules and initial stock log in one transaction.
+     * The new ids are set on the medicine's schedules once the transaction has committed.
+     * @return the medicine id, or -1 on failure
+     */
     public int addMedicine(Medicine medicine) {
-        String sql = "INSERT INTO medicines(name, stock_quantity, low_stock_threshold, dose_unit, instructions) VALUES(?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, medicine.getName());
-            pstmt.setInt(2, medicine.getStockQuantity());
-            pstmt.setInt(3, medicine.getLowStockThreshold());
-            pstmt.setString(4, medicine.getDoseUnit());
-            pstmt.setString(5, medicine.getInstructions());
-            pstmt.executeUpdate();
-            
-            try (Statement stmt = connection.createStatement();
-                 ResultSet keyRs = stmt.executeQuery("SELECT last_insert_rowid()")) {
-                if (keyRs.next()) {
-                    int medId = keyRs.getInt(1);
-                
+        List<Schedule> schedules = medicine.getSchedules() != null ? medicine.getSchedules() : new ArrayList<>();
+        int[] scheduleIds = new int[schedules.size()];
+        try {
+            int id = inTransaction(lease -> {
+                PreparedStatement pstmt = lease.prepare(INSERT_MEDICINE_SQL);
+                pstmt.setString(1, medicine.getName());
+                pstmt.setInt(2, medicine.getStockQuantity());
+                pstmt.setInt(3, medicine.getLowStockThreshold());
+                pstmt.setString(4, medicine.getDoseUnit());
+                pstmt.setString(5, medicine.getInstructions());
+                int medId = returnedId(pstmt);
+
                 // Add Schedules
-                if (medicine.getSchedules() != null) {
-                    addSchedules(medId, medicine.getSchedules());
-                }
+                System.arraycopy(addSchedules(lease, medId, schedules), 0, scheduleIds, 0, scheduleIds.length);
                 // Log Initial Inventory
                 if(medicine.getStockQuantity() > 0) {
-                    logInventoryChange(medId, medicine.getStockQuantity(), "Initial Stock");
+                    logInventoryChange(lease, medId, medicine.getStockQuantity(), "Initial Stock");
                 }
-                
                 return medId;
-            }
-          }
+            });
+            // Only now that the rows are committed
+            setScheduleIds(schedules, id, scheduleIds);
+            return id;
         } catch (SQLException e) {
             logger.error("Error adding medicine", e);
         }
         return -1;
     }
 
-    private void addSchedules(int medicineId, List<Schedule> schedules) {
-        String sql = "INSERT INTO medicine_schedules(medicine_id, time_of_day, meal_timing, dose_amount, custom_note) VALUES(?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            for (Schedule s : schedules) {
-                pstmt.setInt(1, medicineId);
-                pstmt.setString(2, s.getTimeOfDay());
-                pstmt.setString(3, s.getMealTiming());
-                pstmt.setDouble(4, s.getDoseAmount());
-                pstmt.setString(5, s.getCustomNote());
-                pstmt.addBatch();
+    // Returns the new schedule ids in order; the schedules themselves are left alone until commit
+    private int[] addSchedules(ConnectionPool.Lease lease, int medicineId, List<Schedule> schedules) throws SQLException {
+        PreparedStatement pstmt = lease.prepare(INSERT_SCHEDULE_SQL);
+        int[] ids = new int[schedules.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Schedule s = schedules.get(i);
+            pstmt.setInt(1, medicineId);
+            pstmt.setString(2, s.getTimeOfDay());
+            pstmt.setString(3, s.getMealTiming());
+            pstmt.setDouble(4, s.getDoseAmount());
+            pstmt.setString(5, s.getCustomNote());
+            ids[i] = returnedId(pstmt);
+        }
+        return ids;
+    }
+
+    private static void setScheduleIds(List<Schedule> schedules, int medicineId, int[] ids) {
+        for (int i = 0; i < ids.length; i++) {
+            schedules.get(i).setId(ids[i]);
+            schedules.get(i).setMedicineId(medicineId);
+        }
+    }
+
+    // Run an INSERT ... RETURNING id and read the id
+    private static int returnedId(PreparedStatement pstmt) throws SQLException {
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("INSERT returned no id");
             }
-            pstmt.executeBatch();
-        } catch (SQLException e) {
-            logger.error("Error adding schedules", e);
+            return rs.getInt(1);
         }
     }
 
     public List<Medicine> getAllMedicines() {
-        List<Medicine> medicines = new ArrayList<>();
-        String sql = "SELECT * FROM medicines ORDER BY name";
-        try (Statement stmt = connection.createStatement()) {
-            ResultSet rs = stmt.executeQuery(sql);
-            while (rs.next()) {
-                Medicine m = mapResultSetToMedicine(rs);
-                m.setSchedules(getSchedulesForMedicine(m.getId()));
-                medicines.add(m);
-            }
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement pstmt = lease.prepare(SELECT_ALL_MEDICINES_SQL);
+            return loadMedicineGraph(pstmt);
         } catch (SQLException e) {
             logger.error("Error retrieving medicines", e);
         }
-        return medicines;
+        return new ArrayList<>();
     }
 
+    /**
+     * Medicines matching every given filter. The text query matches words in the name,
+     * instructions and dose unit by prefix ("amox 250" finds "Amoxicillin 250mg") and returns
+     * the best MAX_SEARCH_RESULTS matches, name hits ranked above the other columns; without
+     * a text query every match is returned in name order.
+     * Ranking scores every match, so it is skipped when all words are shorter than
+     * MIN_RANKED_WORD_LENGTH: such a prefix (typing "amo") returns the first matches found,
+     * in name order, in a few ms. A longer word found in a large share of the catalog (an
+     * instructions word like "crush") is still ranked in full and can take tens of ms.
+     */
     public List<Medicine> searchMedicines(String query, String frequencyFilter, String mealFilter) {
-        List<Medicine> medicines = new ArrayList<>();
-        StringBuilder sql = new StringBuilder("SELECT DISTINCT m.* FROM medicines m ");
-        sql.append("LEFT JOIN medicine_schedules s ON m.id = s.medicine_id WHERE 1=1 ");
-
-        if (query != null && !query.isEmpty()) {
-            sql.append("AND (m.name LIKE ? OR m.instructions LIKE ?) ");
-        }
-        if (frequencyFilter != null && !frequencyFilter.isEmpty()) {
-             sql.append("AND s.time_of_day = ? ");
-        }
-        if (mealFilter != null && !mealFilter.isEmpty()) {
-             sql.append("AND s.meal_timing = ? ");
-        }
-        
-        sql.append("ORDER BY m.name");
+        String match = toFtsQuery(query);
+        String sql = buildSearchSql(match != null, isSelective(query),
+                frequencyFilter != null && !frequencyFilter.isEmpty(),
+                mealFilter != null && !mealFilter.isEmpty());
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql.toString())) {
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement pstmt = lease.prepare(sql);
             int index = 1;
-            if (query != null && !query.isEmpty()) {
-                pstmt.setString(index++, "%" + query + "%");
-                pstmt.setString(index++, "%" + query + "%");
+            if (match != null) {
+                pstmt.setString(index++, match);
             }
             if (frequencyFilter != null && !frequencyFilter.isEmpty()) {
                 pstmt.setString(index++, frequencyFilter);
@@ -230,16 +545,178 @@ public class DatabaseManager {
             if (mealFilter != null && !mealFilter.isEmpty()) {
                 pstmt.setString(index++, mealFilter);
             }
-
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                Medicine m = mapResultSetToMedicine(rs);
-                m.setSchedules(getSchedulesForMedicine(m.getId()));
-                medicines.add(m);
+            if (match != null) {
+                pstmt.setInt(index++, MAX_SEARCH_RESULTS);
             }
+            return loadMedicineGraph(pstmt);
         } catch (SQLException e) {
             logger.error("Error filtering medicines", e);
         }
+        return new ArrayList<>();
+    }
+
+    private static String buildSearchSql(boolean byText, boolean ranked, boolean byTime, boolean byMeal) {
+        // Filters pick the matching medicine ids; the outer join then loads every schedule of those medicines
+        StringBuilder sql = new StringBuilder(MEDICINE_GRAPH_SELECT);
+        // One schedule has to satisfy both slot filters
+        String slotFilter = "";
+        if (byTime || byMeal) {
+            slotFilter = "IN (SELECT s2.medicine_id FROM medicine_schedules s2 WHERE 1=1 "
+                    + (byTime ? "AND s2.time_of_day = ? " : "")
+                    + (byMeal ? "AND s2.meal_timing = ? " : "") + ") ";
+        }
+
+        if (byText && ranked) {
+            // Rank (bm25, lower is better) and cut to the best matches inside the index, before any row is loaded
+            sql.append("JOIN (SELECT rowid AS id, rank AS score FROM medicines_fts WHERE medicines_fts MATCH ? ");
+            if (!slotFilter.isEmpty()) {
+                sql.append("AND rowid ").append(slotFilter);
+            }
+            sql.append("ORDER BY rank LIMIT ?) f ON f.id = m.id ");
+            // Names are unique, so each medicine's rows stay together for loadMedicineGraph()
+            sql.append("ORDER BY f.score, m.name, s.id");
+        } else if (byText) {
+            // Unranked: the index stops after the first matches it finds
+            sql.append("JOIN (SELECT rowid AS id FROM medicines_fts WHERE medicines_fts MATCH ? ");
+            if (!slotFilter.isEmpty()) {
+                sql.append("AND rowid ").append(slotFilter);
+            }
+            sql.append("LIMIT ?) f ON f.id = m.id ");
+            sql.append("ORDER BY m.name, s.id");
+        } else {
+            if (!slotFilter.isEmpty()) {
+                sql.append("WHERE m.id ").append(slotFilter);
+            }
+            sql.append("ORDER BY m.name, s.id");
+        }
+        return sql.toString();
+    }
+
+    // Whether some word of the query is long enough to match selectively (worth ranking)
+    private static boolean isSelective(String text) {
+        if (text == null) {
+            return false;
+        }
+        for (String word : text.trim().split("\\s+")) {
+            if (word.codePointCount(0, word.length()) >= MIN_RANKED_WORD_LENGTH) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * FTS5 query for free text typed by the user: every word must match as a prefix.
+     * Words are quoted so operators and punctuation in the input are taken literally.
+     * @return null when the text holds no searchable word
+     */
+    private static String toFtsQuery(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : text.trim().split("\\s+")) {
+            if (word.codePoints().anyMatch(Character::isLetterOrDigit)) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append('"').append(word.replace("\"", "\"\"")).append("\"*");
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    /**
+     * Whether the medicine passes the filters of searchMedicines(), evaluated in memory
+     * the way the full-text index would: each word of the query has to match a run of
+     * tokens within one column, its last token as a prefix. Ignores the result limit.
+     */
+    public static boolean matchesSearch(Medicine m, String query, String frequencyFilter, String mealFilter) {
+        boolean byTime = frequencyFilter != null && !frequencyFilter.isEmpty();
+        boolean byMeal = mealFilter != null && !mealFilter.isEmpty();
+        if (byTime || byMeal) {
+            boolean slotMatched = false;
+            for (Schedule s : m.getSchedules()) {
+                if ((!byTime || frequencyFilter.equals(s.getTimeOfDay())) && (!byMeal || mealFilter.equals(s.getMealTiming()))) {
+                    slotMatched = true;
+                    break;
+                }
+            }
+            if (!slotMatched) {
+                return false;
+            }
+        }
+        if (toFtsQuery(query) == null) {
+            return true;
+        }
+        List<List<String>> columns = Arrays.asList(
+                ftsTokens(m.getName()), ftsTokens(m.getInstructions()), ftsTokens(m.getDoseUnit()));
+        for (String word : query.trim().split("\\s+")) {
+            List<String> phrase = ftsTokens(word);
+            if (!phrase.isEmpty() && columns.stream().noneMatch(column -> containsPhrase(column, phrase))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Tokens as the unicode61 tokenizer with remove_diacritics sees them
+    private static List<String> ftsTokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        for (String token : folded.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean containsPhrase(List<String> tokens, List<String> phrase) {
+        int last = phrase.size() - 1;
+        for (int start = 0; start + last < tokens.size(); start++) {
+            int i = 0;
+            while (i < last && tokens.get(start + i).equals(phrase.get(i))) {
+                i++;
+            }
+            if (i == last && tokens.get(start + last).startsWith(phrase.get(last))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds Medicine objects with their schedules from a MEDICINE_GRAPH_SELECT query.
+     * Rows must be grouped by medicine (ordered by name or id), so a single pass is enough.
+     */
+    private List<Medicine> loadMedicineGraph(PreparedStatement pstmt) throws SQLException {
+        List<Medicine> medicines = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            Medicine current = null;
+            while (rs.next()) {
+                int medId = rs.getInt("id");
+                if (current == null || current.getId() != medId) {
+                    current = mapResultSetToMedicine(rs);
+                    medicines.add(current);
+                }
+                int scheduleId = rs.getInt("schedule_id");
+                if (!rs.wasNull()) {
+                    Schedule s = new Schedule();
+                    s.setId(scheduleId);
+                    s.setMedicineId(medId);
+                    s.setTimeOfDay(rs.getString("time_of_day"));
+                    s.setMealTiming(rs.getString("meal_timing"));
+                    s.setDoseAmount(rs.getDouble("dose_amount"));
+                    s.setCustomNote(rs.getString("custom_note"));
+                    current.getSchedules().add(s);
+                }
+            }
+        }
         return medicines;
     }
 
@@ -254,99 +731,214 @@ public class DatabaseManager {
         return m;
     }
 
-    private List<Schedule> getSchedulesForMedicine(int medicineId) {
-        List<Schedule> schedules = new ArrayList<>();
-        String sql = "SELECT * FROM medicine_schedules WHERE medicine_id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, medicineId);
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                Schedule s = new Schedule();
-                s.setId(rs.getInt("id"));
-                s.setMedicineId(rs.getInt("medicine_id"));
-                s.setTimeOfDay(rs.getString("time_of_day"));
-                s.setMealTiming(rs.getString("meal_timing"));
-                s.setDoseAmount(rs.getDouble("dose_amount"));
-                s.setCustomNote(rs.getString("custom_note"));
-                schedules.add(s);
-            }
-        } catch (SQLException e) {
-            logger.error("Error retrieving schedules", e);
-        }
-        return schedules;
-    }
-
+    /**
+     * Save an edited medicine in one transaction, writing only what differs from the stored row.
+     * Schedules are diffed against the stored ones, so unchanged schedules keep their ids (and the
+     * reminder ids derived from them). Any write bumps updated_at. Once committed, the schedule ids
+     * and (if anything was written) the stored created/updated times are set on the medicine.
+     * @return false if the medicine does not exist or the update failed
+     */
     public boolean updateMedicine(Medicine medicine) {
-        String sql = "UPDATE medicines SET name = ?, stock_quantity = ?, low_stock_threshold = ?, dose_unit = ?, instructions = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, medicine.getName());
-            pstmt.setInt(2, medicine.getStockQuantity());
-            pstmt.setInt(3, medicine.getLowStockThreshold());
-            pstmt.setString(4, medicine.getDoseUnit());
-            pstmt.setString(5, medicine.getInstructions());
-            pstmt.setInt(6, medicine.getId());
-            
-            int affected = pstmt.executeUpdate();
-            if(affected > 0) {
-                // Update schedules: Delete all and re-insert (Simplest approach for 1:N update)
-                deleteSchedules(medicine.getId());
-                addSchedules(medicine.getId(), medicine.getSchedules());
+        List<Schedule> schedules = medicine.getSchedules() != null ? medicine.getSchedules() : new ArrayList<>();
+        int[] scheduleIds = new int[schedules.size()];
+        LocalDateTime[] times = new LocalDateTime[2]; // created, updated; null when nothing was written
+        try {
+            boolean found = inTransaction(lease -> {
+                PreparedStatement select = lease.prepare(SELECT_MEDICINE_BY_ID_SQL);
+                select.setInt(1, medicine.getId());
+                List<Medicine> stored = loadMedicineGraph(select);
+                if (stored.isEmpty()) {
+                    return false;
+                }
+                boolean schedulesChanged = syncSchedules(lease, medicine.getId(), stored.get(0).getSchedules(), schedules, scheduleIds);
+                PreparedStatement pstmt = null;
+                if (!sameMedicineFields(stored.get(0), medicine)) {
+                    pstmt = lease.prepare(UPDATE_MEDICINE_SQL);
+                    pstmt.setString(1, medicine.getName());
+                    pstmt.setInt(2, medicine.getStockQuantity());
+                    pstmt.setInt(3, medicine.getLowStockThreshold());
+                    pstmt.setString(4, medicine.getDoseUnit());
+                    pstmt.setString(5, medicine.getInstructions());
+                    pstmt.setInt(6, medicine.getId());
+                } else if (schedulesChanged) {
+                    pstmt = lease.prepare(TOUCH_MEDICINE_SQL);
+                    pstmt.setInt(1, medicine.getId());
+                }
+                if (pstmt != null) {
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next()) {
+                            times[0] = getSqlTimestamp(rs, 1);
+                            times[1] = getSqlTimestamp(rs, 2);
+                        }
+                    }
+                }
                 return true;
+            });
+            if (found) {
+                // Only now that the rows are committed
+                setScheduleIds(schedules, medicine.getId(), scheduleIds);
+                if (times[0] != null) medicine.setCreatedAt(times[0]);
+                if (times[1] != null) medicine.setUpdatedAt(times[1]);
             }
+            return found;
         } catch (SQLException e) {
             logger.error("Error updating medicine", e);
         }
         return false;
     }
+
+    /**
+     * Turn the stored schedules into the incoming ones with as few writes as possible.
+     * An incoming schedule is paired with a stored one by id, else with an identical one,
+     * else with one for the same time of day (the edit dialog builds new objects without ids);
+     * pairs that differ are updated, unpaired stored rows deleted and unpaired incoming ones inserted.
+     * The incoming schedules are not modified; their stored ids are written to ids, in order.
+     * @return whether any schedule row was written
+     */
+    private boolean syncSchedules(ConnectionPool.Lease lease, int medicineId, List<Schedule> stored,
+                                  List<Schedule> incoming, int[] ids) throws SQLException {
+        List<Schedule> unpaired = new ArrayList<>(stored);
+        Schedule[] pairs = new Schedule[incoming.size()];
+        for (int i = 0; i < pairs.length; i++) {
+            int id = incoming.get(i).getId();
+            pairs[i] = id > 0 ? takeSchedule(unpaired, s -> s.getId() == id) : null;
+        }
+        for (int i = 0; i < pairs.length; i++) {
+            Schedule in = incoming.get(i);
+            if (pairs[i] == null) {
+                pairs[i] = takeSchedule(unpaired, s -> sameScheduleFields(s, in));
+            }
+        }
+        for (int i = 0; i < pairs.length; i++) {
+            Schedule in = incoming.get(i);
+            if (pairs[i] == null) {
+                pairs[i] = takeSchedule(unpaired, s -> Objects.equals(s.getTimeOfDay(), in.getTimeOfDay()));
+            }
+        }
+
+        for (Schedule s : unpaired) {
+            PreparedStatement delete = lease.prepare(DELETE_SCHEDULE_SQL);
+            delete.setInt(1, s.getId());
+            delete.executeUpdate();
+        }
+        boolean written = !unpaired.isEmpty();
+        List<Schedule> added = new ArrayList<>();
+        List<Integer> addedAt = new ArrayList<>();
+        for (int i = 0; i < pairs.length; i++) {
+            Schedule in = incoming.get(i);
+            if (pairs[i] == null) {
+                added.add(in);
+                addedAt.add(i);
+                continue;
+            }
+            if (!sameScheduleFields(pairs[i], in)) {
+                written = true;
+                PreparedStatement update = lease.prepare(UPDATE_SCHEDULE_SQL);
+                update.setString(1, in.getTimeOfDay());
+                update.setString(2, in.getMealTiming());
+                update.setDouble(3, in.getDoseAmount());
+                update.setString(4, in.getCustomNote());
+                update.setInt(5, pairs[i].getId());
+                update.executeUpdate();
+            }
+            ids[i] = pairs[i].getId();
+        }
+        int[] addedIds = addSchedules(lease, medicineId, added);
+        for (int i = 0; i < addedIds.length; i++) {
+            ids[addedAt.get(i)] = addedIds[i];
+        }
+        return written || !added.isEmpty();
+    }
+
+    // Remove and return the first schedule matching the test, or null
+    private static Schedule takeSchedule(List<Schedule> schedules, Predicate<Schedule> test) {
+        for (Iterator<Schedule> it = schedules.iterator(); it.hasNext(); ) {
+            Schedule s = it.next();
+            if (test.test(s)) {
+                it.remove();
+                return s;
+            }
+        }
+        return null;
+    }
+
+    private static boolean sameScheduleFields(Schedule a, Schedule b) {
+        return Objects.equals(a.getTimeOfDay(), b.getTimeOfDay())
+                && Objects.equals(a.getMealTiming(), b.getMealTiming())
+                && Double.compare(a.getDoseAmount(), b.getDoseAmount()) == 0
+                && Objects.equals(a.getCustomNote(), b.getCustomNote());
+    }
+
+    private static boolean sameMedicineFields(Medicine a, Medicine b) {
+        return Objects.equals(a.getName(), b.getName())
+                && a.getStockQuantity() == b.getStockQuantity()
+                && a.getLowStockThreshold() == b.getLowStockThreshold()
+                && Objects.equals(a.getDoseUnit(), b.getDoseUnit())
+                && Objects.equals(a.getInstructions(), b.getInstructions());
+    }
     
     public boolean updateStock(int medicineId, int newQuantity, String reason) {
          try {
-             // Get current stock
-             Medicine m = getMedicineById(medicineId);
-             if(m == null) return false;
-             
-             int diff = newQuantity - m.getStockQuantity();
-             
-             String sql = "UPDATE medicines SET stock_quantity = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
-             try(PreparedStatement pstmt = connection.prepareStatement(sql)) {
+             return inTransaction(lease -> {
+                 // Get current stock
+                 PreparedStatement select = lease.prepare(SELECT_STOCK_SQL);
+                 select.setInt(1, medicineId);
+                 int diff;
+                 try (ResultSet rs = select.executeQuery()) {
+                     if (!rs.next()) return false;
+                     diff = newQuantity - rs.getInt(1);
+                 }
+
+                 PreparedStatement pstmt = lease.prepare(SET_STOCK_SQL);
                  pstmt.setInt(1, newQuantity);
                  pstmt.setInt(2, medicineId);
-                 if(pstmt.executeUpdate() > 0) {
-                     logInventoryChange(medicineId, diff, reason);
-                     return true;
-                 }
-             }
+                 pstmt.executeUpdate();
+                 logInventoryChange(lease, medicineId, diff, reason);
+                 return true;
+             });
          } catch(SQLException e) {
              logger.error("Error updating stock", e);
          }
          return false;
     }
-    
-    private void logInventoryChange(int medicineId, int changeAmount, String reason) {
-        String sql = "INSERT INTO inventory_logs(medicine_id, change_amount, reason) VALUES(?, ?, ?)";
-        try(PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, medicineId);
-            pstmt.setInt(2, changeAmount);
-            pstmt.setString(3, reason);
-            pstmt.executeUpdate();
-        } catch(SQLException e) {
-             logger.error("Error logging inventory", e);
-        }
-    }
 
-    private void deleteSchedules(int medicineId) {
-        String sql = "DELETE FROM medicine_schedules WHERE medicine_id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, medicineId);
-            pstmt.executeUpdate();
+    /**
+     * Add delta to a medicine's stock (negative to consume) and log the change, in one transaction.
+     * The guard in the WHERE clause makes the check-and-update atomic under concurrent dose marking.
+     * @return the new stock quantity, or -1 if the medicine does not exist or stock would drop below zero
+     */
+    public int adjustStock(int medicineId, int delta, String reason) {
+        try {
+            return inTransaction(lease -> {
+                PreparedStatement pstmt = lease.prepare(ADJUST_STOCK_SQL);
+                pstmt.setInt(1, delta);
+                pstmt.setInt(2, medicineId);
+                pstmt.setInt(3, delta);
+                int newQuantity;
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) return -1;
+                    newQuantity = rs.getInt(1);
+                }
+                logInventoryChange(lease, medicineId, delta, reason);
+                return newQuantity;
+            });
         } catch (SQLException e) {
-            logger.error("Error deleting schedules", e);
+            logger.error("Error adjusting stock", e);
         }
+        return -1;
+    }
+    
+    private void logInventoryChange(ConnectionPool.Lease lease, int medicineId, int changeAmount, String reason) throws SQLException {
+        PreparedStatement pstmt = lease.prepare(INSERT_INVENTORY_LOG_SQL);
+        pstmt.setInt(1, medicineId);
+        pstmt.setInt(2, changeAmount);
+        pstmt.setString(3, reason);
+        pstmt.executeUpdate();
     }
 
     public boolean deleteMedicine(int id) {
-        String sql = "DELETE FROM medicines WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (ConnectionPool.Lease lease = pool.write()) {
+            PreparedStatement pstmt = lease.prepare(DELETE_MEDICINE_SQL);
             pstmt.setInt(1, id);
             return pstmt.executeUpdate() > 0;
         } catch (SQLException e) {
@@ -356,14 +948,12 @@ public class DatabaseManager {
     }
     
     public Medicine getMedicineById(int id) {
-        String sql = "SELECT * FROM medicines WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement pstmt = lease.prepare(SELECT_MEDICINE_BY_ID_SQL);
             pstmt.setInt(1, id);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                 Medicine m = mapResultSetToMedicine(rs);
-                 m.setSchedules(getSchedulesForMedicine(id));
-                 return m;
+            List<Medicine> result = loadMedicineGraph(pstmt);
+            if (!result.isEmpty()) {
+                 return result.get(0);
             }
         } catch (SQLException e) {
              logger.error("Error retrieving medicine", e);
@@ -371,21 +961,39 @@ public class DatabaseManager {
         return null;
     }
 
+    /**
+     * Counter SQLite changes whenever another process commits to the database file.
+     * Read on the writer connection, which makes all of this application's writes, so our
+     * own commits leave it alone. Returns -1 on error.
+     */
+    public long getExternalDataVersion() {
+        try (ConnectionPool.Lease lease = pool.write();
+             ResultSet rs = lease.prepare(DATA_VERSION_SQL).executeQuery()) {
+            if (rs.next()) {
+                return rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            logger.error("Error reading data version", e);
+        }
+        return -1;
+    }
+
     // ============= USER OPERATIONS =============
     
     public User authenticateUser(String username, String password) {
-         String sql = "SELECT * FROM users WHERE username = ? AND password_hash = ?";
-         try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+         try (ConnectionPool.Lease lease = pool.read()) {
+             PreparedStatement pstmt = lease.prepare(AUTHENTICATE_USER_SQL);
              pstmt.setString(1, username);
              pstmt.setString(2, password); // Ideally text hashing
-             ResultSet rs = pstmt.executeQuery();
-             if(rs.next()) {
-                 User u = new User();
-                 u.setId(rs.getInt("id"));
-                 u.setUsername(rs.getString("username"));
-                 u.setRole(rs.getString("role"));
-                 u.setFullName(rs.getString("full_name"));
-                 return u;
+             try (ResultSet rs = pstmt.executeQuery()) {
+                 if(rs.next()) {
+                     User u = new User();
+                     u.setId(rs.getInt("id"));
+                     u.setUsername(rs.getString("username"));
+                     u.setRole(rs.getString("role"));
+                     u.setFullName(rs.getString("full_name"));
+                     return u;
+                 }
              }
          } catch(SQLException e) {
              logger.error("Error authenticating", e);
@@ -393,14 +1001,18 @@ public class DatabaseManager {
          return null;
     }
     
+    /**
+     * Insert a user; on success the new id is set on it
+     */
     public boolean registerUser(User user) {
-         String sql = "INSERT INTO users(username, password_hash, role, full_name) VALUES(?, ?, ?, ?)";
-         try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+         try (ConnectionPool.Lease lease = pool.write()) {
+             PreparedStatement pstmt = lease.prepare(INSERT_USER_SQL);
              pstmt.setString(1, user.getUsername());
              pstmt.setString(2, user.getPassword()); // Storing raw/simple hash for now
              pstmt.setString(3, user.getRole());
              pstmt.setString(4, user.getFullName());
-             return pstmt.executeUpdate() > 0;
+             user.setId(returnedId(pstmt));
+             return true;
          } catch(SQLException e) {
              logger.error("Error registering user", e);
          }
@@ -409,48 +1021,351 @@ public class DatabaseManager {
 
     // ============= HISTORY OPERATIONS =============
     public int addDoseHistory(DoseHistory history) {
-        String sql = "INSERT INTO dose_history(medicine_id, scheduled_time, taken_time, status, notes) VALUES(?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, history.getMedicineId());
-            pstmt.setString(2, history.getScheduledTime() != null ? history.getScheduledTime().toString() : null);
-            pstmt.setString(3, history.getTakenTime() != null ? history.getTakenTime().toString() : null);
-            pstmt.setString(4, history.getStatus());
-            pstmt.setString(5, history.getNotes());
-            pstmt.executeUpdate();
-            
-            try (Statement stmt = connection.createStatement();
-                 ResultSet keyRs = stmt.executeQuery("SELECT last_insert_rowid()")) {
-                if (keyRs.next()) return keyRs.getInt(1);
-            }
+        try (ConnectionPool.Lease lease = pool.write()) {
+            return insertDoseHistory(lease, history);
         } catch (SQLException e) {
             logger.error("Error adding dose history", e);
         }
         return -1;
     }
 
+    /**
+     * Insert several history rows in one transaction, all or nothing.
+     * @return the new ids in the order of the rows, or an empty array on failure
+     */
+    public int[] addDoseHistoryBatch(List<DoseHistory> histories) {
+        try {
+            return insertDoseHistoryBatch(histories);
+        } catch (SQLException e) {
+            logger.error("Error adding dose history batch", e);
+        }
+        return new int[0];
+    }
+
+    /**
+     * Queue a history row for group commit instead of committing it on its own.
+     * Use for bulk writes (imports, backfills); a burst of rows then shares one transaction.
+     * Publishes nothing: application code goes through HistoryController.appendHistory().
+     * @return completes on the queue's thread with the new id once the row is committed, or -1 on failure
+     */
+    public CompletableFuture<Integer> appendDoseHistory(DoseHistory history) {
+        WriteBehindQueue<DoseHistory> queue = historyQueue;
+        if (queue == null) {
+            logger.error("Error queueing dose history: not connected");
+            return CompletableFuture.completedFuture(-1);
+        }
+        return queue.append(history);
+    }
+
+    // One transaction for the whole batch (addDoseHistoryBatch and historyQueue)
+    private int[] insertDoseHistoryBatch(List<DoseHistory> batch) throws SQLException {
+        return inTransaction(lease -> {
+            int[] ids = new int[batch.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = insertDoseHistory(lease, batch.get(i));
+            }
+            return ids;
+        });
+    }
+
+    private int insertDoseHistory(ConnectionPool.Lease lease, DoseHistory history) throws SQLException {
+        PreparedStatement pstmt = lease.prepare(INSERT_DOSE_HISTORY_SQL);
+        pstmt.setInt(1, history.getMedicineId());
+        setTime(pstmt, 2, history.getScheduledTime());
+        setTime(pstmt, 3, history.getTakenTime());
+        pstmt.setString(4, history.getStatus());
+        pstmt.setString(5, history.getNotes());
+        return returnedId(pstmt);
+    }
+
     public List<DoseHistory> getAllDoseHistory() {
         List<DoseHistory> list = new ArrayList<>();
-        // Join with medicines to get name
-        String sql = "SELECT h.*, m.name as medicine_name FROM dose_history h LEFT JOIN medicines m ON h.medicine_id = m.id ORDER BY h.scheduled_time DESC";
-        try (Statement stmt = connection.createStatement()) {
-            ResultSet rs = stmt.executeQuery(sql);
+        try (ConnectionPool.Lease lease = pool.read();
+             ResultSet rs = lease.prepare(SELECT_ALL_DOSE_HISTORY_SQL).executeQuery()) {
             while (rs.next()) {
-                DoseHistory h = new DoseHistory();
-                h.setId(rs.getInt("id"));
-                h.setMedicineId(rs.getInt("medicine_id"));
-                h.setMedicineName(rs.getString("medicine_name"));
-                String sched = rs.getString("scheduled_time");
-                if (sched != null) h.setScheduledTime(LocalDateTime.parse(sched));
-                String taken = rs.getString("taken_time");
-                if (taken != null) h.setTakenTime(LocalDateTime.parse(taken));
-                h.setStatus(rs.getString("status"));
-                h.setNotes(rs.getString("notes"));
-                list.add(h);
+                list.add(mapResultSetToDoseHistory(rs));
             }
         } catch (SQLException e) {
             logger.error("Error getting history", e);
         }
         return list;
     }
+
+    /**
+     * One page of history, newest first, starting after the given row.
+     * @param status only rows with this status, or null for all
+     * @param after last row of the previous page (only its id and scheduled time are used), or null for the first page
+     */
+    public List<DoseHistory> getDoseHistoryPage(String status, DoseHistory after, int limit) {
+        List<DoseHistory> page = new ArrayList<>();
+        try (ConnectionPool.Lease lease = pool.read()) {
+            if (after == null) {
+                readHistoryPage(lease, HistoryPosition.FIRST, status, null, limit, page);
+            } else if (after.getScheduledTime() != null) {
+                readHistoryPage(lease, HistoryPosition.AFTER_TIME, status, after, limit, page);
+                if (page.size() < limit) {
+                    // Rows without a scheduled time sort after all others
+                    readHistoryPage(lease, HistoryPosition.AFTER_NULL_TIME, status, null, limit - page.size(), page);
+                }
+            } else {
+                readHistoryPage(lease, HistoryPosition.AFTER_NULL_TIME, status, after, limit, page);
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting history page", e);
+        }
+        return page;
+    }
+
+    /**
+     * Cursor for the row offset rows past after (newest first), or offset rows from the newest when after
+     * is null, for jumping into the middle of the history without loading the rows before it. Only id and
+     * scheduled time are filled in; null past the end, or when the offset runs from rows with a scheduled
+     * time into those without one. Each skipped row is still an index entry stepped over, so the cost grows
+     * with offset: start from a nearby cursor.
+     */
+    public DoseHistory getDoseHistoryKeyAt(String status, DoseHistory after, int offset) {
+        HistoryPosition position = after == null ? HistoryPosition.FIRST
+                : after.getScheduledTime() != null ? HistoryPosition.AFTER_TIME : HistoryPosition.AFTER_NULL_TIME;
+        return readHistoryKey(position, status, after, offset, false);
+    }
+
+    /**
+     * Cursor for the row offset rows up from the oldest, for jumps near the end of the history;
+     * like getDoseHistoryKeyAt(), the cost grows with offset
+     */
+    public DoseHistory getDoseHistoryKeyFromOldest(String status, int offset) {
+        return readHistoryKey(HistoryPosition.FIRST, status, null, offset, true);
+    }
+
+    private DoseHistory readHistoryKey(HistoryPosition position, String status, DoseHistory after, int offset,
+                                       boolean fromOldest) {
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement pstmt = lease.prepare(buildHistoryKeySql(position, status != null, fromOldest));
+            int index = bindHistoryPosition(pstmt, position, after);
+            if (status != null) pstmt.setString(index++, status);
+            pstmt.setInt(index, offset);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    DoseHistory key = new DoseHistory();
+                    key.setScheduledTime(getTime(rs, 1));
+                    key.setId(rs.getInt(2));
+                    return key;
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting history cursor", e);
+        }
+        return null;
+    }
+
+    /**
+     * Number of history rows, optionally only those with the given status
+     */
+    public int countDoseHistory(String status) {
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement pstmt = lease.prepare(status != null ? COUNT_DOSE_HISTORY_BY_STATUS_SQL : COUNT_DOSE_HISTORY_SQL);
+            if (status != null) pstmt.setString(1, status);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            logger.error("Error counting history", e);
+        }
+        return 0;
+    }
+
+    /**
+     * History scheduled in [from, to), oldest first
+     */
+    public List<DoseHistory> getDoseHistoryBetween(LocalDateTime from, LocalDateTime to) {
+        List<DoseHistory> list = new ArrayList<>();
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement pstmt = lease.prepare(SELECT_DOSE_HISTORY_BETWEEN_SQL);
+            setTime(pstmt, 1, from);
+            setTime(pstmt, 2, to);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapResultSetToDoseHistory(rs));
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting history range", e);
+        }
+        return list;
+    }
+
+    /**
+     * Receives streamed history rows one at a time
+     */
+    public interface DoseHistoryVisitor {
+        void visit(DoseHistory history) throws IOException;
+    }
+
+    /**
+     * Stream history to the visitor straight from the database cursor, without building a list,
+     * so memory use does not depend on the number of rows.
+     * @param from start of the range, or null (with to) for all history, newest first
+     * @param to end of the range (exclusive); a range is streamed oldest first
+     * @return number of rows visited, or -1 if only one bound was given or the query or the visitor failed
+     */
+    public long streamDoseHistory(LocalDateTime from, LocalDateTime to, DoseHistoryVisitor visitor) {
+        if ((from == null) != (to == null)) {
+            logger.error("Error streaming history: range needs both bounds or neither ({} to {})", from, to);
+            return -1;
+        }
+        boolean all = from == null;
+        long rows = 0;
+        try (ConnectionPool.Lease lease = pool.read();
+             // Not the cached statement: the visitor may query history itself while this cursor is open
+             PreparedStatement pstmt = lease.connection().prepareStatement(
+                     all ? SELECT_ALL_DOSE_HISTORY_SQL : SELECT_DOSE_HISTORY_BETWEEN_SQL)) {
+            if (!all) {
+                setTime(pstmt, 1, from);
+                setTime(pstmt, 2, to);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    visitor.visit(mapResultSetToDoseHistory(rs));
+                    rows++;
+                }
+            }
+            return rows;
+        } catch (SQLException | IOException e) {
+            logger.error("Error streaming history after {} rows", rows, e);
+        }
+        return -1;
+    }
+
+    /**
+     * Number of history rows with the given status scheduled in [from, to)
+     */
+    public int countDoseHistoryBetween(LocalDateTime from, LocalDateTime to, String status) {
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement pstmt = lease.prepare(COUNT_DOSE_HISTORY_BETWEEN_SQL);
+            pstmt.setString(1, status);
+            setTime(pstmt, 2, from);
+            setTime(pstmt, 3, to);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            logger.error("Error counting history range", e);
+        }
+        return 0;
+    }
+
+    // Where a history page starts: at the newest row, after a row with a scheduled time, or among rows without one
+    private enum HistoryPosition { FIRST, AFTER_TIME, AFTER_NULL_TIME }
+
+    private void readHistoryPage(ConnectionPool.Lease lease, HistoryPosition position, String status,
+                                 DoseHistory after, int limit, List<DoseHistory> page) throws SQLException {
+        PreparedStatement pstmt = lease.prepare(buildHistoryPageSql(position, status != null));
+        int index = bindHistoryPosition(pstmt, position, after);
+        if (status != null) pstmt.setString(index++, status);
+        pstmt.setInt(index, limit);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                page.add(mapResultSetToDoseHistory(rs));
+            }
+        }
+    }
+
+    // Binds the cursor of a HistoryPosition; returns the next parameter index
+    private static int bindHistoryPosition(PreparedStatement pstmt, HistoryPosition position, DoseHistory after)
+            throws SQLException {
+        int index = 1;
+        if (position == HistoryPosition.AFTER_TIME) {
+            setTime(pstmt, index++, after.getScheduledTime());
+            pstmt.setInt(index++, after.getId());
+        } else if (position == HistoryPosition.AFTER_NULL_TIME) {
+            pstmt.setInt(index++, after != null ? after.getId() : Integer.MAX_VALUE);
+        }
+        return index;
+    }
+
+    // Keyset pagination: each page seeks straight to its cursor through idx_dose_history_scheduled
+    // (or idx_dose_history_status_time), so page cost does not grow with how deep the page is
+    private static String buildHistoryPageSql(HistoryPosition position, boolean byStatus) {
+        StringBuilder sql = new StringBuilder(DOSE_HISTORY_SELECT);
+        appendHistoryFilter(sql, position, byStatus);
+        sql.append("ORDER BY h.scheduled_time DESC, h.id DESC LIMIT ?");
+        return sql.toString();
+    }
+
+    // Seeks to the cursor like a page query, then OFFSET steps over index entries one at a time:
+    // no table rows are read, but the cost is linear in the offset
+    private static String buildHistoryKeySql(HistoryPosition position, boolean byStatus, boolean fromOldest) {
+        StringBuilder sql = new StringBuilder("SELECT h.scheduled_time, h.id FROM dose_history h ");
+        appendHistoryFilter(sql, position, byStatus);
+        // Ascending is the exact reverse: rows without a scheduled time sort first
+        sql.append(fromOldest ? "ORDER BY h.scheduled_time, h.id " : "ORDER BY h.scheduled_time DESC, h.id DESC ");
+        sql.append("LIMIT 1 OFFSET ?");
+        return sql.toString();
+    }
+
+    private static void appendHistoryFilter(StringBuilder sql, HistoryPosition position, boolean byStatus) {
+        sql.append("WHERE 1=1 ");
+        if (position == HistoryPosition.AFTER_TIME) {
+            sql.append("AND (h.scheduled_time, h.id) < (?, ?) ");
+        } else if (position == HistoryPosition.AFTER_NULL_TIME) {
+            sql.append("AND h.scheduled_time IS NULL AND h.id < ? ");
+        }
+        if (byStatus) {
+            sql.append("AND h.status = ? ");
+        }
+    }
+
+    // Expects the column order of DOSE_HISTORY_SELECT
+    private DoseHistory mapResultSetToDoseHistory(ResultSet rs) throws SQLException {
+        DoseHistory h = new DoseHistory();
+        h.setId(rs.getInt(1));
+        h.setMedicineId(rs.getInt(2));
+        h.setMedicineName(rs.getString(3));
+        h.setScheduledTime(getTime(rs, 4));
+        h.setTakenTime(getTime(rs, 5));
+        h.setStatus(rs.getString(6));
+        h.setNotes(rs.getString(7));
+        return h;
+    }
+
+    // created_at/updated_at hold SQLite CURRENT_TIMESTAMP text ("yyyy-MM-dd HH:mm:ss", UTC); returned in local time
+    private static LocalDateTime getSqlTimestamp(ResultSet rs, int index) throws SQLException {
+        String text = rs.getString(index);
+        if (text == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(text.replace(' ', 'T'))
+                    .atZone(ZoneOffset.UTC).withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // ============= TIMESTAMP CODEC =============
+    // dose_history times are INTEGER seconds since 1970-01-01T00:00 of the local wall clock
+    // (LocalDateTime read as if it were UTC). This round-trips exactly, sorts correctly,
+    // and is unaffected by DST shifts or time zone changes.
+
+    static long encodeTime(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static LocalDateTime decodeTime(long epochSeconds) {
+        return LocalDateTime.ofEpochSecond(epochSeconds, 0, ZoneOffset.UTC);
+    }
+
+    private static void setTime(PreparedStatement pstmt, int index, LocalDateTime time) throws SQLException {
+        if (time == null) {
+            pstmt.setNull(index, Types.INTEGER);
+        } else {
+            pstmt.setLong(index, encodeTime(time));
+        }
+    }
+
+    private static LocalDateTime getTime(ResultSet rs, int index) throws SQLException {
+        long value = rs.getLong(index);
+        return rs.wasNull() ? null : decodeTime(value);
+    }
 }
 
@@ -0,0 +1,93 @@
+package com.example.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Migration Class
+ * One versioned schema step, applied by SchemaMigrator when PRAGMA user_version is below its version.
+ * A plain migration runs its statements in a single transaction. A batched migration rewrites
+ * a table in rowid ranges, one transaction per range, so a large table is never locked in one go;
+ * its range step must be safe to run again on rows it already converted, because an interrupted
+ * run restarts from the first range.
+ */
+final class Migration {
+
+    /**
+     * Work done on the rows whose rowid lies in (fromId, toId].
+     */
+    interface RangeStep {
+        void apply(Connection conn, long fromId, long toId) throws SQLException;
+    }
+
+    private final int version;
+    private final String description;
+    private final String[] statements;
+    private final String table;
+    private final RangeStep rangeStep;
+
+    private Migration(int version, String description, String[] statements, String table, RangeStep rangeStep) {
+        this.version = version;
+        this.description = description;
+        this.statements = statements;
+        this.table = table;
+        this.rangeStep = rangeStep;
+    }
+
+    /**
+     * Migration that runs the given statements in one transaction.
+     */
+    static Migration of(int version, String description, String... statements) {
+        return new Migration(version, description, statements, null, null);
+    }
+
+    /**
+     * Migration that walks table in rowid ranges, committing after each range.
+     */
+    static Migration batched(int version, String description, String table, RangeStep rangeStep) {
+        return new Migration(version, description, new String[0], table, rangeStep);
+    }
+
+    /**
+     * Batched migration whose range step is one statement taking (fromId, toId) as its two parameters.
+     */
+    static Migration batched(int version, String description, String table, String rangeSql) {
+        return batched(version, description, table, (conn, fromId, toId) -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(rangeSql)) {
+                pstmt.setLong(1, fromId);
+                pstmt.setLong(2, toId);
+                pstmt.executeUpdate();
+            }
+        });
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    String getDescription() {
+        return description;
+    }
+
+    boolean isBatched() {
+        return rangeStep != null;
+    }
+
+    String getTable() {
+        return table;
+    }
+
+    void applyStatements(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    void applyRange(Connection conn, long fromId, long toId) throws SQLException {
+        rangeStep.apply(conn, fromId, toId);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.database;
+
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * QueryPlanVerifier Class
+ * Reads SQLite's EXPLAIN QUERY PLAN output for a statement and reports the steps
+ * that read a whole table instead of searching an index.
+ */
+final class QueryPlanVerifier {
+
+    private QueryPlanVerifier() {
+    }
+
+    /**
+     * Plan steps of sql that scan a full table, empty when every step uses an index.
+     */
+    static List<String> findFullScans(Connection conn, String sql) throws SQLException {
+        List<String> scans = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            // The plan does not depend on the values, but the driver refuses unbound parameters
+            ParameterMetaData params = pstmt.getParameterMetaData();
+            for (int i = 1; i <= params.getParameterCount(); i++) {
+                pstmt.setNull(i, Types.NULL);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                // Subquery results SQLite builds itself; reading one back is not a table scan
+                Set<String> subqueries = new HashSet<>();
+                while (rs.next()) {
+                    String detail = rs.getString("detail");
+                    if (detail != null && (detail.startsWith("MATERIALIZE ") || detail.startsWith("CO-ROUTINE "))) {
+                        subqueries.add(detail.substring(detail.indexOf(' ') + 1));
+                    } else if (isFullScan(detail) && !subqueries.contains(detail.substring("SCAN ".length()))) {
+                        scans.add(detail);
+                    }
+                }
+            }
+        }
+        return scans;
+    }
+
+    // "SCAN t" reads every row; "SCAN t USING [COVERING] INDEX i" walks an index in order.
+    // "SCAN CONSTANT ROW" and "SCAN (subquery-n)" do not touch a table.
+    // A virtual table (FTS5) reports "VIRTUAL TABLE INDEX n:plan"; an empty plan means no constraint.
+    private static boolean isFullScan(String detail) {
+        return detail != null
+                && detail.startsWith("SCAN ")
+                && !detail.contains(" USING ")
+                && !detail.startsWith("SCAN CONSTANT ROW")
+                && !detail.startsWith("SCAN (")
+                && !(detail.contains(" VIRTUAL TABLE INDEX ") && !detail.endsWith(":"));
+    }
+}
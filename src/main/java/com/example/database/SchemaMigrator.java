@@ -0,0 +1,142 @@
+package com.example.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * SchemaMigrator Class
+ * Brings a database up to the latest schema version. The version lives in PRAGMA user_version
+ * and is bumped in the same transaction as the migration that reaches it, so a failed step
+ * leaves the database at the previous version and is retried on the next start.
+ * Batched migrations release the writer between ranges so other writers can get in.
+ */
+class SchemaMigrator {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    private static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    private final ConnectionPool pool;
+    private final List<Migration> migrations;
+    private final int batchSize;
+
+    SchemaMigrator(ConnectionPool pool, List<Migration> migrations) {
+        this(pool, migrations, DEFAULT_BATCH_SIZE);
+    }
+
+    SchemaMigrator(ConnectionPool pool, List<Migration> migrations, int batchSize) {
+        this.pool = pool;
+        this.migrations = new ArrayList<>(migrations);
+        this.migrations.sort(Comparator.comparingInt(Migration::getVersion));
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Highest version the known migrations lead to.
+     */
+    int latestVersion() {
+        return migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).getVersion();
+    }
+
+    /**
+     * Current PRAGMA user_version of the database.
+     */
+    int currentVersion() throws SQLException {
+        try (ConnectionPool.Lease lease = pool.write();
+             Statement stmt = lease.connection().createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Apply every migration newer than the database, in version order.
+     * @return the version the database is at afterwards
+     */
+    int migrate() throws SQLException {
+        int current = currentVersion();
+        if (current > latestVersion()) {
+            logger.warn("Database schema version {} is newer than this application ({}); skipping migrations",
+                    current, latestVersion());
+            return current;
+        }
+        for (Migration migration : migrations) {
+            if (migration.getVersion() <= current) {
+                continue;
+            }
+            long start = System.nanoTime();
+            if (migration.isBatched()) {
+                applyBatched(migration);
+            } else {
+                inTransaction(conn -> {
+                    migration.applyStatements(conn);
+                    setVersion(conn, migration.getVersion());
+                });
+            }
+            current = migration.getVersion();
+            logger.info("Applied migration {} ({}) in {} ms", current, migration.getDescription(),
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+        return current;
+    }
+
+    private void applyBatched(Migration migration) throws SQLException {
+        long[] bounds = rowidBounds(migration.getTable());
+        long total = bounds[1] - bounds[0];
+        for (long from = bounds[0]; from < bounds[1]; from += batchSize) {
+            long fromId = from;
+            long toId = Math.min(from + batchSize, bounds[1]);
+            inTransaction(conn -> migration.applyRange(conn, fromId, toId));
+            if (total > batchSize) {
+                logger.info("Migration {}: rows up to id {} of {} done", migration.getVersion(), toId, bounds[1]);
+            }
+        }
+        inTransaction(conn -> setVersion(conn, migration.getVersion()));
+    }
+
+    // (min rowid - 1, max rowid], so the ranges (from, to] cover every existing row
+    private long[] rowidBounds(String table) throws SQLException {
+        try (ConnectionPool.Lease lease = pool.write();
+             Statement stmt = lease.connection().createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(rowid), MAX(rowid) FROM " + table)) {
+            if (!rs.next() || rs.getObject(1) == null) {
+                return new long[]{0, 0};
+            }
+            return new long[]{rs.getLong(1) - 1, rs.getLong(2)};
+        }
+    }
+
+    private static void setVersion(Connection conn, int version) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // PRAGMA does not take bind parameters; version is an int from the migration list
+            stmt.execute("PRAGMA user_version = " + version);
+        }
+    }
+
+    private interface MigrationWork {
+        void run(Connection conn) throws SQLException;
+    }
+
+    private void inTransaction(MigrationWork work) throws SQLException {
+        try (ConnectionPool.Lease lease = pool.write()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            try {
+                work.run(conn);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WriteBehindQueue Class
+ * Group commit for append-only rows. Callers queue rows and get a future; one worker thread
+ * writes whatever has queued up in a single transaction, so a burst of N inserts costs one
+ * commit (one fsync) instead of N. A batch is written once it reaches maxBatch rows or its
+ * first row has waited lingerMillis, whichever comes first.
+ * Each future completes with the row's generated id once its transaction has committed
+ * (the durability acknowledgement), or with -1 if the row could not be written.
+ * Futures complete on the queue's thread; chain slow work with the *Async methods.
+ */
+final class WriteBehindQueue<T> implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    /**
+     * Writes rows in one transaction, all or nothing, returning their ids in order
+     */
+    interface BatchWriter<T> {
+        int[] write(List<T> rows) throws SQLException;
+    }
+
+    private final String name;
+    private final BatchWriter<T> writer;
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final BlockingQueue<Pending<T>> queue = new LinkedBlockingQueue<>();
+    // Queued by close() behind the last row; wakes an idle worker and tells it to stop there
+    private final Pending<T> closeMarker = new Pending<>(null);
+    private final Thread worker;
+    // Guards closed against append(), so no row can be queued after close() has drained the queue
+    private final Object lock = new Object();
+    private volatile boolean closed;
+
+    WriteBehindQueue(String name, BatchWriter<T> writer, int maxBatch, long lingerMillis) {
+        this.name = name;
+        this.writer = writer;
+        this.maxBatch = maxBatch;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queue a row for the next group commit
+     * @return completes with the row's id once committed, or -1 if it failed or the queue is closed
+     */
+    CompletableFuture<Integer> append(T row) {
+        Pending<T> pending = new Pending<>(row);
+        synchronized (lock) {
+            if (!closed) {
+                queue.add(pending);
+                return pending.done;
+            }
+        }
+        logger.error("{} is closed; row not written", name);
+        pending.done.complete(-1);
+        return pending.done;
+    }
+
+    /**
+     * Stop accepting rows and write everything already queued
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (!closed) {
+                closed = true;
+                queue.add(closeMarker);
+            }
+        }
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Rows the worker left behind (the join was interrupted, or it was itself interrupted first)
+        List<Pending<T>> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.remove(closeMarker);
+        if (!rest.isEmpty()) {
+            commit(rest);
+        }
+    }
+
+    private void run() {
+        List<Pending<T>> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            try {
+                Pending<T> first = queue.take();
+                if (first == closeMarker) {
+                    return;
+                }
+                batch.add(first);
+                boolean closing = fill(batch, System.nanoTime() + lingerNanos);
+                commit(batch);
+                batch.clear();
+                if (closing) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abandon(batch);
+                return;
+            }
+        }
+    }
+
+    // The worker was interrupted: stop accepting rows and fail every row it will not write
+    private void abandon(List<Pending<T>> batch) {
+        synchronized (lock) {
+            closed = true;
+        }
+        queue.drainTo(batch);
+        batch.remove(closeMarker);
+        if (!batch.isEmpty()) {
+            logger.error("{} interrupted; {} rows not written", name, batch.size());
+        }
+        for (Pending<T> p : batch) {
+            p.done.complete(-1);
+        }
+        batch.clear();
+    }
+
+    /**
+     * Gather more rows until the batch is full or the deadline passes
+     * @return true when the close marker was reached (it is never left in the batch)
+     */
+    private boolean fill(List<Pending<T>> batch, long deadline) throws InterruptedException {
+        while (batch.size() < maxBatch) {
+            queue.drainTo(batch, maxBatch - batch.size());
+            // Nothing is queued after the marker, so a drain can only end with it
+            if (batch.get(batch.size() - 1) == closeMarker) {
+                batch.remove(batch.size() - 1);
+                return true;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatch || remaining <= 0) {
+                return false;
+            }
+            Pending<T> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return false;
+            }
+            if (next == closeMarker) {
+                return true;
+            }
+            batch.add(next);
+        }
+        return false;
+    }
+
+    private void commit(List<Pending<T>> batch) {
+        List<T> rows = new ArrayList<>(batch.size());
+        for (Pending<T> p : batch) {
+            rows.add(p.row);
+        }
+        try {
+            int[] ids = writer.write(rows);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).done.complete(ids[i]);
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (batch.size() == 1) {
+                logger.error("{}: error writing row", name, e);
+                batch.get(0).done.complete(-1);
+                return;
+            }
+            // The whole batch rolled back; retry row by row so one bad row fails alone
+            logger.warn("{}: batch of {} rows failed, retrying one by one", name, batch.size(), e);
+            for (Pending<T> p : batch) {
+                commit(Collections.singletonList(p));
+            }
+        }
+    }
+
+    private static final class Pending<T> {
+        final T row;
+        final CompletableFuture<Integer> done = new CompletableFuture<>();
+
+        Pending(T row) {
+            this.row = row;
+        }
+    }
+}
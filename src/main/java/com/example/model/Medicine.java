@@ -36,6 +36,21 @@ public class Medicine implements Serializable {
         this.stockQuantity = stockQuantity;
     }
 
+    /**
+     * Copy for snapshots and edit dialogs; the schedule list is copied, the schedules are shared
+     */
+    public Medicine(Medicine other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.stockQuantity = other.stockQuantity;
+        this.lowStockThreshold = other.lowStockThreshold;
+        this.doseUnit = other.doseUnit;
+        this.instructions = other.instructions;
+        this.schedules = new ArrayList<>(other.schedules);
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+    }
+
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
     public String getName() { return name; }
@@ -58,6 +73,9 @@ public class Medicine implements Serializable {
     
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
     
     // Helper to get simple dosage string for UI display
     public String getDosageSummary() {
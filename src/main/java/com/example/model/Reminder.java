@@ -35,6 +35,17 @@ public class Reminder implements Serializable {
         this.reminderTime = reminderTime;
     }
 
+    /**
+     * Copy for snapshots
+     */
+    public Reminder(Reminder other) {
+        this.id = other.id;
+        this.medicineName = other.medicineName;
+        this.reminderTime = other.reminderTime;
+        this.status = other.status;
+        this.createdAt = other.createdAt;
+    }
+
     public int getId() {
         return id;
     }
@@ -1,98 +1,196 @@
 package com.example.service;
 
 import com.example.controller.ReminderController;
-import com.example.model.Medicine;
 import com.example.model.Reminder;
-import com.example.model.Schedule;
+import com.example.utils.AsyncUtils;
+import com.example.utils.DataChangeListener;
+import com.example.utils.TimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import java.awt.*;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Medicine Reminder Service
- * Runs in background and shows popup notifications when medicine time matches
+ * Shows popup notifications when a medicine is due. Instead of polling, it loads the day's
+ * reminders, sleeps until the next one is due (or midnight) and loads them again only when it
+ * wakes or when medicines or schedules change, so it does no work between doses.
+ * Every deadline (next reminder, snooze, auto-close, escalation) is a timer on the shared
+ * TimingWheel, so no thread is started per notification.
  */
 public class MedicineReminderService {
-    private Timer timer;
-    private ReminderController controller;
-    private Set<String> notifiedToday = new HashSet<>(); // Track what we've notified
-    private boolean enabled = true;
+    private static final Logger logger = LoggerFactory.getLogger(MedicineReminderService.class);
+
+    // A reminder reached late (at start-up, after the machine sleeps) still pops up if it is this recent
+    private static final Duration GRACE_PERIOD = Duration.ofMinutes(2);
+    private static final long SNOOZE_MINUTES = 5;
+    private static final long AUTO_CLOSE_SECONDS = 60;
+    // An auto-closed (unanswered) reminder comes back once after this long
+    private static final long ESCALATION_MINUTES = 10;
+
+    private final ReminderController controller;
+    private final TimingWheel timers = TimingWheel.shared();
+    // Snooze, auto-close and escalation timers still pending, cancelled on stop()
+    private final Set<TimingWheel.Timeout> pendingTimers = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+    // Guarded by this (plan() runs on the database executor)
+    private TimingWheel.Timeout nextWake;
+    private final Set<String> notifiedToday = new HashSet<>(); // Track what we've notified
+    private volatile boolean enabled = true;
+
+    private final DataChangeListener medicineListener = new DataChangeListener() {
+        @Override
+        public void onMedicineDataChanged() {
+            replan(); // schedules may have moved, appeared or gone
+        }
+
+        @Override
+        public void onReminderDataChanged() { }
+
+        @Override
+        public void onInventoryDataChanged() { }
+
+        @Override
+        public void onHistoryDataChanged() { }
+    };
     
     public MedicineReminderService(ReminderController controller) {
         this.controller = controller;
     }
     
     public void start() {
-        if (timer != null) {
-            timer.cancel();
+        if (running) {
+            stop();
         }
         
-        timer = new Timer("MedicineReminderTimer", true);
-        
-        // Check every 30 seconds
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                if (enabled) {
-                    checkReminders();
-                }
-            }
-        }, 0, 30 * 1000); // 30 seconds
+        running = true;
+        if (controller.getMedicineController() != null) {
+            controller.getMedicineController().addDataChangeListener(medicineListener);
+        }
+        replan();
         
         System.out.println("Medicine Reminder Service started!");
     }
     
     public void stop() {
-        if (timer != null) {
-            timer.cancel();
-            timer = null;
+        if (controller.getMedicineController() != null) {
+            controller.getMedicineController().removeDataChangeListener(medicineListener);
+        }
+        running = false;
+        synchronized (this) {
+            if (nextWake != null) {
+                nextWake.cancel();
+                nextWake = null;
+            }
         }
+        for (TimingWheel.Timeout timeout : pendingTimers) {
+            timeout.cancel();
+        }
+        pendingTimers.clear();
         System.out.println("Medicine Reminder Service stopped!");
     }
     
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
+        replan();
+    }
+
+    /**
+     * Reload the plan in the background; called on start, on each wake-up and whenever the data changes
+     */
+    private void replan() {
+        if (running) {
+            AsyncUtils.runAsync(this::plan);
+        }
+    }
+
+    /**
+     * Run the task after the delay unless the service is stopped first.
+     * The wheel thread only hands the task over; it runs on the EDT.
+     */
+    private TimingWheel.Timeout scheduleOnEdt(Runnable task, long delay, TimeUnit unit) {
+        if (!running) {
+            return null;
+        }
+        TimingWheel.Timeout[] self = new TimingWheel.Timeout[1];
+        self[0] = timers.schedule(() -> {
+            if (self[0] != null) {
+                pendingTimers.remove(self[0]);
+            }
+            SwingUtilities.invokeLater(task);
+        }, delay, unit);
+        pendingTimers.add(self[0]);
+        if (self[0].isExpired()) {
+            pendingTimers.remove(self[0]); // fired before it was registered
+        }
+        return self[0];
     }
     
-    private void checkReminders() {
+    /**
+     * Notify whatever is due now, then sleep until the next pending reminder or midnight,
+     * whichever comes first.
+     */
+    private synchronized void plan() {
+        if (nextWake != null) {
+            nextWake.cancel();
+            nextWake = null;
+        }
+        if (!running || !enabled) {
+            return;
+        }
+        if (controller.getMedicineController() != null) {
+            // Picks up edits made by another process; the reload itself triggers a replan
+            controller.getMedicineController().reloadIfChanged();
+        }
         LocalDateTime now = LocalDateTime.now();
-        LocalTime currentTime = now.toLocalTime();
         String today = now.toLocalDate().toString();
         
         // Clear notifications from previous days
         notifiedToday.removeIf(key -> !key.startsWith(today));
         
-        List<Reminder> reminders = controller.getDailyReminders();
-        
-        for (Reminder r : reminders) {
-            if (r.getStatus() == Reminder.Status.PENDING) {
-                LocalTime reminderTime = r.getReminderTime().toLocalTime();
-                
-                // Check if current time is within 2 minutes of reminder time
-                long diffMinutes = Math.abs(java.time.Duration.between(currentTime, reminderTime).toMinutes());
-                
-                if (diffMinutes <= 2) {
-                    String notifyKey = today + "_" + r.getMedicineName() + "_" + reminderTime.toString();
+        LocalDateTime wakeAt = now.toLocalDate().plusDays(1).atStartOfDay();
+        try {
+            for (Reminder r : controller.getDailyReminders()) {
+                // Reminders in the past come back as MISSED, so anything not yet taken counts
+                if (r.getStatus() == Reminder.Status.TAKEN) {
+                    continue;
+                }
+                LocalDateTime reminderTime = r.getReminderTime();
+                if (reminderTime.isAfter(now)) {
+                    if (reminderTime.isBefore(wakeAt)) {
+                        wakeAt = reminderTime;
+                    }
+                } else if (!reminderTime.isBefore(now.minus(GRACE_PERIOD))) {
+                    String notifyKey = notifyKey(r);
                     
                     // Only notify once
-                    if (!notifiedToday.contains(notifyKey)) {
-                        notifiedToday.add(notifyKey);
-                        showReminderNotification(r);
+                    if (notifiedToday.add(notifyKey)) {
+                        showReminderNotification(r, false);
                     }
                 }
             }
+        } catch (RuntimeException e) {
+            logger.error("Error planning reminders", e);
         }
+        // The wheel rounds up to its next tick, so the wake-up never lands before the reminder
+        long delayMillis = Math.max(Duration.between(LocalDateTime.now(), wakeAt).toMillis() + 1, 0);
+        nextWake = timers.schedule(this::replan, delayMillis, TimeUnit.MILLISECONDS);
+        logger.debug("Next reminder check at {}", wakeAt);
+    }
+
+    private static String notifyKey(Reminder r) {
+        return r.getReminderTime().toLocalDate() + "_" + r.getMedicineName() + "_" + r.getReminderTime().toLocalTime();
     }
     
-    private void showReminderNotification(Reminder r) {
+    private void showReminderNotification(Reminder r, boolean escalated) {
         SwingUtilities.invokeLater(() -> {
             // Create custom notification dialog
             JDialog dialog = new JDialog();
@@ -117,7 +215,7 @@ public class MedicineReminderService {
             messagePanel.setLayout(new BoxLayout(messagePanel, BoxLayout.Y_AXIS));
             messagePanel.setOpaque(false);
             
-            JLabel titleLabel = new JLabel("Time to take your medicine!");
+            JLabel titleLabel = new JLabel(escalated ? "Reminder: medicine not taken yet!" : "Time to take your medicine!");
             titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 16));
             titleLabel.setForeground(Color.WHITE);
             titleLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
@@ -146,11 +244,15 @@ public class MedicineReminderService {
             JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 0));
             buttonPanel.setOpaque(false);
             
+            // Auto-close after 60 seconds; an unanswered reminder is repeated once
+            TimingWheel.Timeout[] autoClose = new TimingWheel.Timeout[1];
+            
             JButton takenBtn = new JButton("✅ Taken");
             takenBtn.setBackground(new Color(46, 125, 50));
             takenBtn.setForeground(Color.WHITE);
             takenBtn.setFocusPainted(false);
             takenBtn.addActionListener(e -> {
+                cancelTimer(autoClose[0]);
                 JOptionPane.showMessageDialog(dialog, "Marked as taken!", "Success", JOptionPane.INFORMATION_MESSAGE);
                 dialog.dispose();
             });
@@ -161,17 +263,9 @@ public class MedicineReminderService {
             snoozeBtn.setForeground(Color.WHITE);
             snoozeBtn.setFocusPainted(false);
             snoozeBtn.addActionListener(e -> {
-                // Remove from notified so it can trigger again
-                String today = LocalDateTime.now().toLocalDate().toString();
-                String notifyKey = today + "_" + r.getMedicineName() + "_" + r.getReminderTime().toLocalTime().toString();
-                
-                // Schedule to remove from notified set after 5 minutes
-                new Timer().schedule(new TimerTask() {
-                    @Override
-                    public void run() {
-                        notifiedToday.remove(notifyKey);
-                    }
-                }, 5 * 60 * 1000);
+                cancelTimer(autoClose[0]);
+                // Pop up again in a few minutes, unless stopped, disabled or taken first
+                scheduleOnEdt(() -> remindAgain(r, false), SNOOZE_MINUTES, TimeUnit.MINUTES);
                 
                 dialog.dispose();
             });
@@ -181,7 +275,10 @@ public class MedicineReminderService {
             dismissBtn.setBackground(new Color(120, 120, 120));
             dismissBtn.setForeground(Color.WHITE);
             dismissBtn.setFocusPainted(false);
-            dismissBtn.addActionListener(e -> dialog.dispose());
+            dismissBtn.addActionListener(e -> {
+                cancelTimer(autoClose[0]);
+                dialog.dispose();
+            });
             buttonPanel.add(dismissBtn);
             
             panel.add(buttonPanel, BorderLayout.SOUTH);
@@ -192,22 +289,50 @@ public class MedicineReminderService {
             // Play system beep
             Toolkit.getDefaultToolkit().beep();
             
-            // Auto-close after 60 seconds
-            new Timer().schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    SwingUtilities.invokeLater(() -> {
-                        if (dialog.isVisible()) {
-                            dialog.dispose();
-                        }
-                    });
+            autoClose[0] = scheduleOnEdt(() -> {
+                if (!dialog.isVisible()) {
+                    return;
                 }
-            }, 60 * 1000);
+                dialog.dispose();
+                if (!escalated) {
+                    scheduleOnEdt(() -> remindAgain(r, true), ESCALATION_MINUTES, TimeUnit.MINUTES);
+                }
+            }, AUTO_CLOSE_SECONDS, TimeUnit.SECONDS);
+        });
+    }
+
+    /**
+     * Show a snoozed or escalated reminder again, unless the service was disabled or the
+     * dose has been taken in the meantime. The plan lookup may hit the database, so it
+     * runs in the background.
+     */
+    private void remindAgain(Reminder r, boolean escalated) {
+        AsyncUtils.runAsync(() -> {
+            if (!enabled) {
+                return;
+            }
+            for (Reminder current : controller.getDailyReminders()) {
+                if (current.getId() == r.getId()) {
+                    Reminder.Status status = current.getStatus();
+                    if (status == Reminder.Status.PENDING || status == Reminder.Status.MISSED) {
+                        showReminderNotification(current, escalated);
+                    }
+                    return;
+                }
+            }
         });
     }
+
+    private void cancelTimer(TimingWheel.Timeout timeout) {
+        if (timeout != null && timeout.cancel()) {
+            pendingTimers.remove(timeout);
+        }
+    }
     
     // Clear today's notifications (useful for testing)
     public void clearNotifications() {
-        notifiedToday.clear();
+        synchronized (this) {
+            notifiedToday.clear();
+        }
     }
 }
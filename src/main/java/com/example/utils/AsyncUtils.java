@@ -0,0 +1,96 @@
+package com.example.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Async Utilities
+ * Runs database work off the Swing Event Dispatch Thread and hands results back to it.
+ * On JDK 24+ each task gets a virtual thread (blocking in the driver's synchronized
+ * methods no longer pins the carrier there); older runtimes use a small daemon pool
+ * sized to the database connection pool.
+ */
+public final class AsyncUtils {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncUtils.class);
+
+    // 4 reader connections + 1 writer; more threads would only queue for a connection
+    private static final int DB_THREADS = 5;
+    private static final int VIRTUAL_THREADS_MIN_VERSION = 24;
+
+    private static final ExecutorService DB_EXECUTOR = createExecutor();
+
+    /**
+     * Executor that runs callbacks on the Event Dispatch Thread
+     */
+    public static final Executor EDT = SwingUtilities::invokeLater;
+
+    private AsyncUtils() {
+    }
+
+    /**
+     * Run work on the database executor. Work still queued when the future is
+     * cancelled is skipped.
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        DB_EXECUTOR.execute(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(work.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    public static CompletableFuture<Void> runAsync(Runnable work) {
+        return supplyAsync(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Run on the Event Dispatch Thread: now if already on it, otherwise later
+     */
+    public static void runOnEdt(Runnable task) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            task.run();
+        } else {
+            SwingUtilities.invokeLater(task);
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        if (Runtime.version().feature() >= VIRTUAL_THREADS_MIN_VERSION) {
+            try {
+                // Looked up reflectively: the code is compiled for Java 11
+                ExecutorService executor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                logger.info("Database work runs on virtual threads");
+                return executor;
+            } catch (ReflectiveOperationException e) {
+                logger.warn("Virtual threads unavailable, using a thread pool", e);
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread t = new Thread(r, "db-worker-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        return Executors.newFixedThreadPool(DB_THREADS, factory);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Data Change Bus
+ * Collects change events published from any thread and delivers them on the Event Dispatch
+ * Thread once per frame: however many changes arrive within a frame, each listener gets
+ * one onDataChanged() call with all of those it subscribed to, in publishing order.
+ * A burst of a thousand stock updates therefore costs each panel one refresh.
+ */
+public final class DataChangeBus {
+    private static final Logger logger = LoggerFactory.getLogger(DataChangeBus.class);
+
+    // About one display frame
+    private static final int FRAME_MILLIS = 16;
+
+    private static final DataChangeBus SHARED = new DataChangeBus();
+
+    // Both guarded by this
+    private final Map<DataChangeListener, Set<DataChangeEvent.Topic>> subscriptions = new LinkedHashMap<>();
+    private List<DataChangeEvent> pending = new ArrayList<>();
+    private final Timer frame;
+
+    /**
+     * The application-wide bus the controllers publish on
+     */
+    public static DataChangeBus shared() {
+        return SHARED;
+    }
+
+    public DataChangeBus() {
+        frame = new Timer(FRAME_MILLIS, e -> flush());
+        frame.setRepeats(false);
+    }
+
+    /**
+     * Deliver changes on this topic to the listener; subscribing again adds topics, never duplicates
+     */
+    public synchronized void subscribe(DataChangeListener listener, DataChangeEvent.Topic topic) {
+        subscriptions.computeIfAbsent(listener, l -> EnumSet.noneOf(DataChangeEvent.Topic.class)).add(topic);
+    }
+
+    public synchronized void unsubscribe(DataChangeListener listener, DataChangeEvent.Topic topic) {
+        Set<DataChangeEvent.Topic> topics = subscriptions.get(listener);
+        if (topics != null) {
+            topics.remove(topic);
+            if (topics.isEmpty()) {
+                subscriptions.remove(listener);
+            }
+        }
+    }
+
+    /**
+     * Stop all deliveries to the listener (e.g. a panel whose window is disposed)
+     */
+    public synchronized void unsubscribeAll(DataChangeListener listener) {
+        subscriptions.remove(listener);
+    }
+
+    /**
+     * Queue a change for the next frame; safe from any thread
+     */
+    public void publish(DataChangeEvent event) {
+        boolean first;
+        synchronized (this) {
+            first = pending.isEmpty();
+            pending.add(event);
+        }
+        if (first) {
+            frame.start();
+        }
+    }
+
+    // On the EDT, one frame after the first event of a burst
+    private void flush() {
+        List<DataChangeEvent> events;
+        Map<DataChangeListener, Set<DataChangeEvent.Topic>> targets = new LinkedHashMap<>();
+        synchronized (this) {
+            events = pending;
+            pending = new ArrayList<>();
+            for (Map.Entry<DataChangeListener, Set<DataChangeEvent.Topic>> e : subscriptions.entrySet()) {
+                targets.put(e.getKey(), EnumSet.copyOf(e.getValue()));
+            }
+        }
+        for (Map.Entry<DataChangeListener, Set<DataChangeEvent.Topic>> target : targets.entrySet()) {
+            List<DataChangeEvent> relevant = new ArrayList<>();
+            for (DataChangeEvent event : events) {
+                if (target.getValue().contains(event.getTopic())) {
+                    relevant.add(event);
+                }
+            }
+            if (relevant.isEmpty()) {
+                continue;
+            }
+            try {
+                target.getKey().onDataChanged(relevant);
+            } catch (RuntimeException ex) {
+                logger.error("Data change listener failed", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.utils;
+
+/**
+ * A single change published on the DataChangeBus: what kind of change, to which entity,
+ * and snapshots of the entity before and after it. Snapshots are never modified after the
+ * change (cached medicines are immutable, other entities are copied), so they stay valid.
+ * Medicine and inventory events carry Medicine snapshots, reminder events Reminder and
+ * history events the recorded DoseHistory (history rows are never edited);
+ * RELOADED events (entity id 0) carry none.
+ */
+public class DataChangeEvent {
+
+    public enum Topic {
+        MEDICINE,
+        REMINDER,
+        INVENTORY,
+        HISTORY
+    }
+
+    public enum Kind {
+        ADDED,
+        UPDATED,
+        REMOVED,
+        // The whole data set may have changed; refresh everything shown from it
+        RELOADED
+    }
+
+    private final Topic topic;
+    private final Kind kind;
+    private final int entityId;
+    private final Object before;
+    private final Object after;
+
+    public DataChangeEvent(Topic topic, Kind kind, int entityId, Object before, Object after) {
+        this.topic = topic;
+        this.kind = kind;
+        this.entityId = entityId;
+        this.before = before;
+        this.after = after;
+    }
+
+    public static DataChangeEvent added(Topic topic, int entityId, Object after) {
+        return new DataChangeEvent(topic, Kind.ADDED, entityId, null, after);
+    }
+
+    public static DataChangeEvent updated(Topic topic, int entityId, Object before, Object after) {
+        return new DataChangeEvent(topic, Kind.UPDATED, entityId, before, after);
+    }
+
+    public static DataChangeEvent removed(Topic topic, int entityId, Object before) {
+        return new DataChangeEvent(topic, Kind.REMOVED, entityId, before, null);
+    }
+
+    public static DataChangeEvent reloaded(Topic topic) {
+        return new DataChangeEvent(topic, Kind.RELOADED, 0, null, null);
+    }
+
+    public Topic getTopic() {
+        return topic;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    /**
+     * The entity as it was before the change, or null (ADDED, RELOADED, or not known)
+     */
+    public <T> T getBefore(Class<T> type) {
+        return type.isInstance(before) ? type.cast(before) : null;
+    }
+
+    /**
+     * The entity as it is after the change, or null (REMOVED, RELOADED)
+     */
+    public <T> T getAfter(Class<T> type) {
+        return type.isInstance(after) ? type.cast(after) : null;
+    }
+
+    /**
+     * Whether this change covers the whole data set rather than one entity
+     */
+    public boolean isReload() {
+        return kind == Kind.RELOADED;
+    }
+
+    @Override
+    public String toString() {
+        return topic + " " + kind + (isReload() ? "" : " #" + entityId);
+    }
+}
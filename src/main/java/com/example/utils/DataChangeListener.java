@@ -1,5 +1,9 @@
 package com.example.utils;
 
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * Interface for listening to data changes in the application.
  * This enables real-time UI updates when data is modified.
@@ -27,4 +31,20 @@ public interface DataChangeListener {
      * Called when history data changes (add, update, delete)
      */
     void onHistoryDataChanged();
+
+    /**
+     * Called on the EDT with every change of one frame (see DataChangeBus).
+     * By default calls the matching callback above once per topic that changed;
+     * override to react to the whole batch at once.
+     */
+    default void onDataChanged(List<DataChangeEvent> changes) {
+        Set<DataChangeEvent.Topic> topics = EnumSet.noneOf(DataChangeEvent.Topic.class);
+        for (DataChangeEvent change : changes) {
+            topics.add(change.getTopic());
+        }
+        if (topics.contains(DataChangeEvent.Topic.MEDICINE)) onMedicineDataChanged();
+        if (topics.contains(DataChangeEvent.Topic.REMINDER)) onReminderDataChanged();
+        if (topics.contains(DataChangeEvent.Topic.INVENTORY)) onInventoryDataChanged();
+        if (topics.contains(DataChangeEvent.Topic.HISTORY)) onHistoryDataChanged();
+    }
 }
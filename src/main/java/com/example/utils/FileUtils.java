@@ -1,26 +1,40 @@
 package com.example.utils;
 
+import com.example.database.DatabaseBackup;
+import com.example.database.DatabaseManager;
 import com.example.model.DoseHistory;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * FileUtils Class
  * Provides utilities for file operations including CSV export and JSON serialization.
+ * History exports can stream from the database cursor into a buffered, optionally gzipped
+ * writer, so their memory use does not grow with the number of rows.
  */
 public class FileUtils {
     private static final Logger logger = LoggerFactory.getLogger(FileUtils.class);
     private static final String EXPORT_DIR = "exports/";
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    public static final int PROGRESS_INTERVAL_ROWS = 10_000;
+    private static final CSVFormat HISTORY_CSV_FORMAT = CSVFormat.DEFAULT
+            .withHeader("ID", "Medicine Name", "Scheduled Time", "Taken Time", "Status", "Notes");
     private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
     static {
@@ -36,19 +50,9 @@ public class FileUtils {
      */
     public static String exportHistoryToCSV(List<DoseHistory> histories, String fileName) {
         String filePath = EXPORT_DIR + fileName + "_" + System.currentTimeMillis() + ".csv";
-        try (Writer out = new FileWriter(filePath);
-             CSVPrinter printer = new CSVPrinter(out, CSVFormat.DEFAULT
-                     .withHeader("ID", "Medicine Name", "Scheduled Time", "Taken Time", "Status", "Notes"))) {
-
+        try (CSVPrinter printer = new CSVPrinter(openWriter(filePath, false), HISTORY_CSV_FORMAT)) {
             for (DoseHistory history : histories) {
-                printer.printRecord(
-                        history.getId(),
-                        history.getMedicineName(),
-                        history.getScheduledTime(),
-                        history.getTakenTime(),
-                        history.getStatus(),
-                        history.getNotes() != null ? history.getNotes() : ""
-                );
+                printHistoryRecord(printer, history);
             }
             printer.flush();
             logger.info("History exported to CSV: " + filePath);
@@ -59,6 +63,75 @@ public class FileUtils {
         return null;
     }
 
+    /**
+     * Export dose history to CSV straight from the database cursor, in constant memory
+     * @param from start of the range, or null (with to) for all history
+     * @param to end of the range (exclusive), or null (with from); one bound alone is rejected
+     * @param gzip write a gzipped ".csv.gz"
+     * @param progress told the running row count every PROGRESS_INTERVAL_ROWS rows and at the end, or null
+     * @return path of the file written, or null on failure
+     */
+    public static String exportHistoryToCSV(LocalDateTime from, LocalDateTime to, String fileName,
+                                            boolean gzip, ExportProgress progress) {
+        return exportHistoryToCSV(DatabaseManager.getInstance(), from, to, fileName, gzip, progress);
+    }
+
+    static String exportHistoryToCSV(DatabaseManager db, LocalDateTime from, LocalDateTime to, String fileName,
+                                     boolean gzip, ExportProgress progress) {
+        String filePath = EXPORT_DIR + fileName + "_" + System.currentTimeMillis() + (gzip ? ".csv.gz" : ".csv");
+        long rows;
+        try (CSVPrinter printer = new CSVPrinter(openWriter(filePath, gzip), HISTORY_CSV_FORMAT)) {
+            ProgressCounter counter = new ProgressCounter(progress);
+            rows = db.streamDoseHistory(from, to, history -> {
+                printHistoryRecord(printer, history);
+                counter.increment();
+            });
+            if (rows >= 0) {
+                counter.finish();
+            }
+        } catch (IOException e) {
+            logger.error("Error exporting history to CSV", e);
+            rows = -1;
+        }
+        return finishExport(filePath, rows, "CSV");
+    }
+
+    /**
+     * Export dose history to JSON (an array of row objects) straight from the database cursor,
+     * in constant memory. Parameters as for the streaming exportHistoryToCSV.
+     * @return path of the file written, or null on failure
+     */
+    public static String exportHistoryToJSON(LocalDateTime from, LocalDateTime to, String fileName,
+                                             boolean gzip, ExportProgress progress) {
+        return exportHistoryToJSON(DatabaseManager.getInstance(), from, to, fileName, gzip, progress);
+    }
+
+    static String exportHistoryToJSON(DatabaseManager db, LocalDateTime from, LocalDateTime to, String fileName,
+                                      boolean gzip, ExportProgress progress) {
+        String filePath = EXPORT_DIR + fileName + "_" + System.currentTimeMillis() + (gzip ? ".json.gz" : ".json");
+        long rows;
+        // The file writer is closed rather than the JsonWriter, which would reject the unfinished
+        // document of a failed stream with a second, misleading error
+        try (Writer out = openWriter(filePath, gzip)) {
+            JsonWriter json = new JsonWriter(out);
+            ProgressCounter counter = new ProgressCounter(progress);
+            json.beginArray();
+            rows = db.streamDoseHistory(from, to, history -> {
+                writeHistoryObject(json, history);
+                counter.increment();
+            });
+            if (rows >= 0) {
+                json.endArray();
+                json.flush();
+                counter.finish();
+            }
+        } catch (IOException e) {
+            logger.error("Error exporting history to JSON", e);
+            rows = -1;
+        }
+        return finishExport(filePath, rows, "JSON");
+    }
+
     /**
      * Export daily report to CSV
      */
@@ -88,11 +161,11 @@ public class FileUtils {
      */
     public static <T> boolean saveToJSON(T object, String fileName) {
         String filePath = EXPORT_DIR + fileName + ".json";
-        try (Writer writer = new FileWriter(filePath)) {
+        try (Writer writer = openWriter(filePath, false)) {
             gson.toJson(object, writer);
             logger.info("Object saved to JSON: " + filePath);
             return true;
-        } catch (IOException e) {
+        } catch (IOException | JsonIOException e) {
             logger.error("Error saving object to JSON", e);
         }
         return false;
@@ -103,7 +176,7 @@ public class FileUtils {
      */
     public static <T> T loadFromJSON(String fileName, Class<T> classOfT) {
         String filePath = EXPORT_DIR + fileName + ".json";
-        try (Reader reader = new FileReader(filePath)) {
+        try (Reader reader = Files.newBufferedReader(Paths.get(filePath), StandardCharsets.UTF_8)) {
             return gson.fromJson(reader, classOfT);
         } catch (IOException e) {
             logger.error("Error loading object from JSON", e);
@@ -112,19 +185,37 @@ public class FileUtils {
     }
 
     /**
-     * Create backup of database
+     * Create backup of database (online backup of the live database into a plain ".db" copy in
+     * the export directory); earlier backups are kept
      */
     public static boolean backupDatabase() {
-        try {
-            String sourceFile = "daily_dose.db";
-            String backupFile = EXPORT_DIR + "backup_daily_dose_" + System.currentTimeMillis() + ".db";
-            Files.copy(Paths.get(sourceFile), Paths.get(backupFile));
-            logger.info("Database backed up to: " + backupFile);
-            return true;
-        } catch (IOException e) {
-            logger.error("Error backing up database", e);
-        }
-        return false;
+        return backupDatabase(DatabaseBackup.KEEP_ALL, false);
+    }
+
+    /**
+     * Create backup of database in the export directory
+     * @param keep backups to retain, older ones being deleted, or DatabaseBackup.KEEP_ALL
+     * @param compress gzip the backup (".db.gz")
+     */
+    public static boolean backupDatabase(int keep, boolean compress) {
+        return DatabaseManager.getInstance().backup(Paths.get(EXPORT_DIR), keep, compress, null) != null;
+    }
+
+    /**
+     * Create backup of database on a background thread, like backupDatabase()
+     * @return completes with the backup taken, or null on failure
+     */
+    public static CompletableFuture<DatabaseBackup.Result> backupDatabaseAsync(DatabaseBackup.ProgressListener listener) {
+        return backupDatabaseAsync(DatabaseBackup.KEEP_ALL, false, listener);
+    }
+
+    /**
+     * Create backup of database on a background thread, like backupDatabase(keep, compress)
+     * @return completes with the backup taken, or null on failure
+     */
+    public static CompletableFuture<DatabaseBackup.Result> backupDatabaseAsync(int keep, boolean compress,
+                                                                             DatabaseBackup.ProgressListener listener) {
+        return DatabaseManager.getInstance().backupAsync(Paths.get(EXPORT_DIR), keep, compress, listener);
     }
 
     /**
@@ -148,6 +239,76 @@ public class FileUtils {
         return false;
     }
 
+    /**
+     * Receives the progress of a streaming export
+     */
+    public interface ExportProgress {
+        void rowsWritten(long rows);
+    }
+
+    // UTF-8 writer with a large buffer (and gzip stage when asked) so rows cost no system call each
+    private static Writer openWriter(String filePath, boolean gzip) throws IOException {
+        OutputStream out = new FileOutputStream(filePath);
+        if (gzip) {
+            out = new GZIPOutputStream(out, WRITE_BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+    }
+
+    private static void printHistoryRecord(CSVPrinter printer, DoseHistory history) throws IOException {
+        printer.printRecord(
+                history.getId(),
+                history.getMedicineName(),
+                history.getScheduledTime(),
+                history.getTakenTime(),
+                history.getStatus(),
+                history.getNotes() != null ? history.getNotes() : ""
+        );
+    }
+
+    private static void writeHistoryObject(JsonWriter json, DoseHistory history) throws IOException {
+        json.beginObject();
+        json.name("id").value(history.getId());
+        json.name("medicineId").value(history.getMedicineId());
+        json.name("medicineName").value(history.getMedicineName());
+        json.name("scheduledTime").value(history.getScheduledTime() != null ? history.getScheduledTime().toString() : null);
+        json.name("takenTime").value(history.getTakenTime() != null ? history.getTakenTime().toString() : null);
+        json.name("status").value(history.getStatus());
+        json.name("notes").value(history.getNotes());
+        json.endObject();
+    }
+
+    // Log a finished streaming export, or delete the partial file of a failed one
+    private static String finishExport(String filePath, long rows, String format) {
+        if (rows < 0) {
+            deleteFile(filePath);
+            return null;
+        }
+        logger.info("History exported to {}: {} ({} rows)", format, filePath, rows);
+        return filePath;
+    }
+
+    private static final class ProgressCounter {
+        private final ExportProgress progress;
+        private long rows;
+
+        ProgressCounter(ExportProgress progress) {
+            this.progress = progress;
+        }
+
+        void increment() {
+            if (++rows % PROGRESS_INTERVAL_ROWS == 0 && progress != null) {
+                progress.rowsWritten(rows);
+            }
+        }
+
+        void finish() {
+            if (progress != null) {
+                progress.rowsWritten(rows);
+            }
+        }
+    }
+
     /**
      * Get export directory path
      */
@@ -0,0 +1,116 @@
+package com.example.utils;
+
+/**
+ * Int Object Map
+ * Hash map from int keys to objects with open addressing (linear probing) over plain
+ * int and Object arrays: no Integer boxing and no entry object per mapping, so a get()
+ * is a multiply, a shift and usually one array probe.
+ * Null values are not allowed (get() returns null for "absent"). Not thread-safe; share
+ * it only as part of a snapshot that is no longer written to.
+ */
+public final class IntObjectMap<V> {
+    private static final int MIN_CAPACITY = 8;
+    // Kept at most half full so probe runs stay short
+    private static final int MAX_LOAD_PERCENT = 50;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int shift;
+    private int size;
+
+    public IntObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize mappings to hold without resizing
+     */
+    public IntObjectMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Copy of another map, to build a changed version while the original stays shared
+     */
+    public IntObjectMap(IntObjectMap<? extends V> other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        mask = other.mask;
+        shift = other.shift;
+        size = other.size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        for (int i = slot(key); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the value previously mapped to the key, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null values are not supported");
+        }
+        int i = slot(key);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 100 > values.length * MAX_LOAD_PERCENT) {
+            rehash(values.length * 2);
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int slot(int key) {
+        return (key * 0x9E3779B9) >>> shift; // Fibonacci hashing: top bits, so sequential ids spread out
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int j = slot(oldKeys[i]);
+                while (values[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * MAX_LOAD_PERCENT < Math.max(expectedSize, 0) * 100 + 1) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
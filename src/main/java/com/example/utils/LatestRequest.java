@@ -0,0 +1,86 @@
+package com.example.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.JComponent;
+import java.awt.event.HierarchyEvent;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Latest Request
+ * One async load feeding one piece of UI. Submitting a new request cancels the one
+ * still in flight, and only the newest result is delivered (on the EDT), so fast
+ * typing or tab switching never lets an older result overwrite a newer one.
+ * Use from the Event Dispatch Thread only.
+ */
+public class LatestRequest<T> {
+    private static final Logger logger = LoggerFactory.getLogger(LatestRequest.class);
+
+    private CompletableFuture<T> current;
+    // The newest submission, re-issued if hiding the component cancelled it
+    private Supplier<CompletableFuture<T>> lastRequest;
+    private Consumer<T> lastOnResult;
+    private boolean cancelledByHide;
+
+    /**
+     * Start the request (the supplier is called now, and again if it has to be re-issued)
+     */
+    public void submit(Supplier<CompletableFuture<T>> request, Consumer<T> onResult) {
+        cancel();
+        lastRequest = request;
+        lastOnResult = onResult;
+        CompletableFuture<T> future = request.get();
+        current = future;
+        future.whenCompleteAsync((result, error) -> {
+            if (current != future) {
+                return; // superseded or cancelled
+            }
+            current = null;
+            if (error == null) {
+                onResult.accept(result);
+            } else if (!(unwrap(error) instanceof CancellationException)) {
+                logger.error("Background request failed", unwrap(error));
+            }
+        }, AsyncUtils.EDT);
+    }
+
+    /**
+     * Drop the request in flight, if any; its result will not be delivered
+     */
+    public void cancel() {
+        cancelledByHide = false;
+        if (current != null) {
+            current.cancel(false);
+            current = null;
+        }
+    }
+
+    /**
+     * Cancel whenever the component stops showing (tab switched away, window hidden), and
+     * re-issue the cancelled request once it shows again so its contents are not left stale
+     */
+    public LatestRequest<T> pauseWhileHidden(JComponent component) {
+        component.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) == 0) {
+                return;
+            }
+            if (!component.isShowing()) {
+                boolean inFlight = current != null;
+                cancel();
+                cancelledByHide = inFlight;
+            } else if (cancelledByHide) {
+                submit(lastRequest, lastOnResult);
+            }
+        });
+        return this;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
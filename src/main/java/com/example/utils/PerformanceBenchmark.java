@@ -0,0 +1,590 @@
+package com.example.utils;
+
+import com.example.controller.HistoryController;
+import com.example.controller.MedicineController;
+import com.example.controller.ReminderController;
+import com.example.database.DatabaseBackup;
+import com.example.database.DatabaseManager;
+import com.example.model.DoseHistory;
+import com.example.model.Medicine;
+import com.example.model.Reminder;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * PerformanceBenchmark
+ * Standalone timing runs for the persistence layer. Every scenario works on a
+ * throw-away database file in the system temp directory, never on daily_dose_v2.db.
+ *
+ * Usage: PerformanceBenchmark [scenario]   (default: all)
+ *   medicines  - catalog load (medicines + schedules) at 100, 10k and 100k medicines
+ *   reminders  - daily reminder plan (dose-status resolution) for 50 medicines x 5 years of history
+ *   timers     - TimingWheel schedule/cancel cost and firing lateness with 100k pending timers
+ *   search     - full-text medicine search over a 100k-item formulary, against the old LIKE scan
+ *   appends    - dose history inserts per second, one commit per row against group commit
+ *   backup     - online backup throughput (plain and gzipped) and writer latency while it runs
+ *   exports    - streaming history export (CSV, gzipped CSV, gzipped JSON) of ~2M rows: rows/sec and heap
+ */
+public class PerformanceBenchmark {
+    private static final String[] TIME_SLOTS = {"MORNING", "NOON", "NIGHT"};
+    private static final String[] MEAL_SLOTS = {"BEFORE_MEAL", "AFTER_MEAL", "NONE"};
+    // The N+1 baseline grows quadratically past this size, so larger runs only time the set-based load
+    private static final int MAX_LEGACY_LOAD_SIZE = 10_000;
+    // Syllables and endings for a formulary of varied, plausible-looking names
+    private static final String[] NAME_SYLLABLES = {"a", "mo", "xi", "pa", "ra", "ce", "lo", "sar", "me", "tfo", "le",
+            "vo", "ci", "pro", "do", "ty", "pan", "clo", "pi", "bu", "pre", "dni", "flu", "co", "zi", "thro", "val", "ter"};
+    private static final String[] NAME_ENDINGS = {"cillin", "tamol", "prazole", "vastatin", "min", "floxacin",
+            "tan", "roxime", "cycline", "dogrel", "profen", "solone", "nazole", "mycin"};
+    private static final String[] STRENGTHS = {"5mg", "10mg", "20mg", "40mg", "250mg", "500mg"};
+    private static final String[] INSTRUCTIONS = {"Take with water", "Take after food", "Do not crush",
+            "Avoid alcohol", "Take before bedtime", "Shake well before use"};
+
+    public static void main(String[] args) throws Exception {
+        String scenario = args.length > 0 ? args[0] : "all";
+        if (scenario.equals("all") || scenario.equals("medicines")) {
+            benchmarkMedicineLoad(new int[]{100, 10_000, 100_000});
+        }
+        if (scenario.equals("all") || scenario.equals("reminders")) {
+            benchmarkReminderPlan(50, 5);
+        }
+        if (scenario.equals("all") || scenario.equals("timers")) {
+            benchmarkTimingWheel(100_000);
+        }
+        if (scenario.equals("all") || scenario.equals("search")) {
+            benchmarkSearch(100_000, 200);
+        }
+        if (scenario.equals("all") || scenario.equals("appends")) {
+            benchmarkHistoryAppends(2_000, 100_000);
+        }
+        if (scenario.equals("all") || scenario.equals("backup")) {
+            benchmarkBackup(100_000, 200, 10);
+        }
+        if (scenario.equals("all") || scenario.equals("exports")) {
+            benchmarkExports(300, 10);
+        }
+        System.exit(0);
+    }
+
+    // ============= MEDICINE CATALOG LOAD =============
+
+    private static void benchmarkMedicineLoad(int[] sizes) throws SQLException {
+        System.out.println("== Medicine catalog load (getAllMedicines) ==");
+        System.out.printf("%10s %14s %14s%n", "medicines", "set-based ms", "N+1 ms");
+        for (int size : sizes) {
+            File dbFile = tempDatabase("bench_medicines_" + size);
+            String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+
+            DatabaseManager db = DatabaseManager.open(url);
+            try (Connection conn = DriverManager.getConnection(url)) {
+                seedMedicines(conn, size);
+
+                db.getAllMedicines(); // warm-up
+                long start = System.nanoTime();
+                List<Medicine> loaded = db.getAllMedicines();
+                double setBasedMs = (System.nanoTime() - start) / 1_000_000.0;
+
+                String legacy = "skipped";
+                if (size <= MAX_LEGACY_LOAD_SIZE) {
+                    start = System.nanoTime();
+                    loadMedicinesOneByOne(conn);
+                    legacy = String.format("%.1f", (System.nanoTime() - start) / 1_000_000.0);
+                }
+
+                if (loaded.size() != size) {
+                    System.out.println("  WARNING: expected " + size + " medicines, got " + loaded.size());
+                }
+                System.out.printf("%10d %14.1f %14s%n", size, setBasedMs, legacy);
+            } finally {
+                db.disconnect();
+                deleteDatabase(dbFile);
+            }
+        }
+    }
+
+    private static void seedMedicines(Connection conn, int count) throws SQLException {
+        conn.setAutoCommit(false);
+        try (PreparedStatement medStmt = conn.prepareStatement(
+                     "INSERT INTO medicines(id, name, stock_quantity, low_stock_threshold, dose_unit, instructions) VALUES(?, ?, ?, ?, ?, ?)");
+             PreparedStatement schedStmt = conn.prepareStatement(
+                     "INSERT INTO medicine_schedules(medicine_id, time_of_day, meal_timing, dose_amount) VALUES(?, ?, ?, ?)")) {
+            for (int i = 1; i <= count; i++) {
+                medStmt.setInt(1, i);
+                medStmt.setString(2, "Medicine " + i);
+                medStmt.setInt(3, 30 + i % 50);
+                medStmt.setInt(4, 10);
+                medStmt.setString(5, "Tablet");
+                medStmt.setString(6, "Benchmark entry " + i);
+                medStmt.addBatch();
+                // 1 to 3 schedules per medicine
+                for (int s = 0; s <= i % 3; s++) {
+                    schedStmt.setInt(1, i);
+                    schedStmt.setString(2, TIME_SLOTS[s]);
+                    schedStmt.setString(3, MEAL_SLOTS[(i + s) % 3]);
+                    schedStmt.setDouble(4, 1.0);
+                    schedStmt.addBatch();
+                }
+                if (i % 5_000 == 0) {
+                    medStmt.executeBatch();
+                    schedStmt.executeBatch();
+                }
+            }
+            medStmt.executeBatch();
+            schedStmt.executeBatch();
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    // The pre-join access pattern: one schedule query, prepared afresh, per medicine row
+    private static void loadMedicinesOneByOne(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM medicines ORDER BY name");
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                int id = rs.getInt(1);
+                try (PreparedStatement sched = conn.prepareStatement("SELECT * FROM medicine_schedules WHERE medicine_id = ?")) {
+                    sched.setInt(1, id);
+                    try (ResultSet srs = sched.executeQuery()) {
+                        while (srs.next()) {
+                            srs.getString("time_of_day");
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // ============= REMINDER PLAN =============
+
+    private static void benchmarkReminderPlan(int medicineCount, int years) throws SQLException {
+        System.out.println("== Daily reminder plan (" + medicineCount + " medicines x " + years + " years of history) ==");
+        File dbFile = tempDatabase("bench_reminders");
+        String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+
+        DatabaseManager db = DatabaseManager.open(url);
+        try (Connection conn = DriverManager.getConnection(url)) {
+            seedMedicines(conn, medicineCount);
+            int rows = seedDoseHistory(conn, medicineCount, years);
+
+            MedicineController medicineController = new MedicineController(db);
+            HistoryController historyController = new HistoryController(db);
+            ReminderController reminderController = new ReminderController();
+            reminderController.setMedicineController(medicineController);
+            reminderController.setHistoryController(historyController);
+
+            reminderController.generateDailyReminders(); // warm-up
+            int runs = 20;
+            long start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                reminderController.generateDailyReminders();
+            }
+            double indexedMs = (System.nanoTime() - start) / 1_000_000.0 / runs;
+            List<Reminder> plan = reminderController.getDailyReminders();
+
+            start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                reminderController.getDailyReminders();
+            }
+            double cachedUs = (System.nanoTime() - start) / 1_000.0 / runs;
+
+            // The earlier access pattern: one history range query per reminder
+            List<Medicine> medicines = medicineController.getAllMedicines();
+            start = System.nanoTime();
+            for (Medicine m : medicines) {
+                for (int s = 0; s < m.getSchedules().size(); s++) {
+                    LocalDateTime due = LocalDate.now().atTime(8 + 6 * s, 0);
+                    historyController.getHistoryBetween(due.minusHours(1), due.plusHours(1));
+                }
+            }
+            double perReminderMs = (System.nanoTime() - start) / 1_000_000.0;
+
+            System.out.printf("  history rows: %d, reminders today: %d%n", rows, plan.size());
+            System.out.printf("  indexed plan build: %.2f ms, cached read: %.1f us, query per reminder: %.2f ms%n",
+                    indexedMs, cachedUs, perReminderMs);
+        } finally {
+            db.disconnect();
+            deleteDatabase(dbFile);
+        }
+    }
+
+    // One dose per schedule per day, most taken, ending today
+    private static int seedDoseHistory(Connection conn, int medicineCount, int years) throws SQLException {
+        LocalDate first = LocalDate.now().minusYears(years);
+        int rows = 0;
+        conn.setAutoCommit(false);
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO dose_history(medicine_id, scheduled_time, taken_time, status) VALUES(?, ?, ?, ?)")) {
+            for (LocalDate day = first; !day.isAfter(LocalDate.now()); day = day.plusDays(1)) {
+                for (int id = 1; id <= medicineCount; id++) {
+                    // Matches seedMedicines: medicine i has i % 3 + 1 schedules
+                    for (int s = 0; s <= id % 3; s++) {
+                        LocalDateTime scheduled = day.atTime(8 + 6 * s, 0);
+                        boolean taken = (rows % 10) != 0;
+                        pstmt.setInt(1, id);
+                        pstmt.setLong(2, scheduled.toEpochSecond(ZoneOffset.UTC));
+                        if (taken) {
+                            pstmt.setLong(3, scheduled.plusMinutes(5).toEpochSecond(ZoneOffset.UTC));
+                        } else {
+                            pstmt.setNull(3, Types.INTEGER);
+                        }
+                        pstmt.setString(4, taken ? "TAKEN" : "MISSED");
+                        pstmt.addBatch();
+                        if (++rows % 5_000 == 0) {
+                            pstmt.executeBatch();
+                        }
+                    }
+                }
+            }
+            pstmt.executeBatch();
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        return rows;
+    }
+
+    // ============= TIMING WHEEL =============
+
+    private static void benchmarkTimingWheel(int count) throws InterruptedException {
+        System.out.println("== Timing wheel (" + count + " pending timers, one thread) ==");
+        TimingWheel wheel = new TimingWheel("bench-timing-wheel", 10, 512);
+        Random random = new Random(42);
+        int toCancel = count / 2;
+        CountDownLatch fired = new CountDownLatch(count - toCancel);
+        AtomicLong maxLateNanos = new AtomicLong();
+        TimingWheel.Timeout[] timeouts = new TimingWheel.Timeout[count];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            // Spread over 1-10 s, several turns of a 512 x 10 ms wheel
+            long delayMillis = 1_000 + random.nextInt(9_000);
+            long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            timeouts[i] = wheel.schedule(() -> {
+                maxLateNanos.accumulateAndGet(System.nanoTime() - due, Math::max);
+                fired.countDown();
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+        double scheduleNs = (System.nanoTime() - start) / (double) count;
+        long pendingAfterSchedule = wheel.pendingCount();
+
+        start = System.nanoTime();
+        for (int i = 0; i < toCancel; i++) {
+            timeouts[i * 2].cancel();
+        }
+        double cancelNs = (System.nanoTime() - start) / (double) toCancel;
+
+        boolean allFired = fired.await(30, TimeUnit.SECONDS);
+        Thread.sleep(50); // let the last tick settle the counters
+        System.out.printf("  pending after schedule: %d%n", pendingAfterSchedule);
+        System.out.printf("  schedule: %.0f ns/op, cancel: %.0f ns/op%n", scheduleNs, cancelNs);
+        System.out.printf("  fired %d of %d, max lateness %.1f ms, left pending %d%n",
+                count - toCancel - fired.getCount(), count - toCancel,
+                maxLateNanos.get() / 1_000_000.0, wheel.pendingCount());
+        if (!allFired) {
+            System.out.println("  WARNING: not every timer fired within 30 s");
+        }
+    }
+
+    // ============= FULL-TEXT SEARCH =============
+
+    private static void benchmarkSearch(int size, int runs) throws SQLException {
+        System.out.println("== Medicine search (" + size + " medicines, " + runs + " runs per query) ==");
+        File dbFile = tempDatabase("bench_search");
+        String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+
+        DatabaseManager db = DatabaseManager.open(url);
+        try (Connection conn = DriverManager.getConnection(url)) {
+            String[] sample = seedFormulary(conn, size).split(" ");
+            // What a user types while looking for one medicine, plus an instructions word shared by a sixth of them
+            String[] queries = {sample[0].substring(0, 3), sample[0].substring(0, 5), sample[0],
+                    sample[0].substring(0, 4) + " " + sample[1].substring(0, 2), "crush"};
+
+            System.out.printf("%22s %8s %10s %10s%n", "query", "matches", "fts ms", "LIKE ms");
+            for (String query : queries) {
+                List<Medicine> found = db.searchMedicines(query, null, null); // warm-up
+                long start = System.nanoTime();
+                for (int i = 0; i < runs; i++) {
+                    db.searchMedicines(query, null, null);
+                }
+                double ftsMs = (System.nanoTime() - start) / 1_000_000.0 / runs;
+
+                start = System.nanoTime();
+                likeSearch(conn, query);
+                double likeMs = (System.nanoTime() - start) / 1_000_000.0;
+
+                System.out.printf("%22s %8d %10.2f %10.2f%n", "\"" + query + "\"", found.size(), ftsMs, likeMs);
+            }
+        } finally {
+            db.disconnect();
+            deleteDatabase(dbFile);
+        }
+    }
+
+    // Inserted through the medicines_fts triggers, like any other write. Returns one of the names.
+    private static String seedFormulary(Connection conn, int count) throws SQLException {
+        Random random = new Random(42);
+        String sample = null;
+        conn.setAutoCommit(false);
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO medicines(id, name, stock_quantity, dose_unit, instructions) VALUES(?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= count; i++) {
+                String name = NAME_SYLLABLES[random.nextInt(NAME_SYLLABLES.length)]
+                        + NAME_SYLLABLES[random.nextInt(NAME_SYLLABLES.length)]
+                        + NAME_SYLLABLES[random.nextInt(NAME_SYLLABLES.length)]
+                        + NAME_ENDINGS[random.nextInt(NAME_ENDINGS.length)]
+                        + " " + STRENGTHS[random.nextInt(STRENGTHS.length)];
+                if (i == count / 2) {
+                    sample = name;
+                }
+                pstmt.setInt(1, i);
+                // The trailing number keeps names unique, as the schema requires
+                pstmt.setString(2, name + " " + i);
+                pstmt.setInt(3, 30);
+                pstmt.setString(4, i % 4 == 0 ? "ml" : "tablet");
+                pstmt.setString(5, INSTRUCTIONS[i % INSTRUCTIONS.length]);
+                pstmt.addBatch();
+                if (i % 5_000 == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        return sample;
+    }
+
+    // The previous search: substring LIKE on name and instructions, which reads every medicine
+    private static int likeSearch(Connection conn, String query) throws SQLException {
+        int rows = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT DISTINCT m.id FROM medicines m WHERE m.name LIKE ? OR m.instructions LIKE ? ORDER BY m.name")) {
+            pstmt.setString(1, "%" + query + "%");
+            pstmt.setString(2, "%" + query + "%");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    // ============= GROUP COMMIT =============
+
+    private static void benchmarkHistoryAppends(int singleRows, int queuedRows) throws SQLException {
+        System.out.println("== Dose history inserts (rows/sec) ==");
+        File dbFile = tempDatabase("bench_appends");
+        String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+
+        DatabaseManager db = DatabaseManager.open(url);
+        try (Connection conn = DriverManager.getConnection(url)) {
+            seedMedicines(conn, 10);
+            LocalDateTime base = LocalDateTime.now().minusYears(1);
+
+            // One transaction, so one commit and fsync, per row
+            long start = System.nanoTime();
+            for (int i = 0; i < singleRows; i++) {
+                db.addDoseHistory(benchmarkDose(base, i));
+            }
+            double singleSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            // Queued rows; the futures complete once their group has committed
+            start = System.nanoTime();
+            CompletableFuture<?>[] acks = new CompletableFuture<?>[queuedRows];
+            for (int i = 0; i < queuedRows; i++) {
+                acks[i] = db.appendDoseHistory(benchmarkDose(base, singleRows + i));
+            }
+            CompletableFuture.allOf(acks).join();
+            double queuedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            long failed = Arrays.stream(acks).filter(f -> ((Integer) f.join()) < 0).count();
+            System.out.printf("  commit per row: %,d rows in %.2f s = %,.0f rows/sec%n",
+                    singleRows, singleSeconds, singleRows / singleSeconds);
+            System.out.printf("  group commit:   %,d rows in %.2f s = %,.0f rows/sec (%d failed)%n",
+                    queuedRows, queuedSeconds, queuedRows / queuedSeconds, failed);
+        } finally {
+            db.disconnect();
+            deleteDatabase(dbFile);
+        }
+    }
+
+    private static DoseHistory benchmarkDose(LocalDateTime base, int i) {
+        DoseHistory h = new DoseHistory(1 + i % 10, base.plusMinutes(i), DoseHistory.STATUS_TAKEN);
+        h.setTakenTime(base.plusMinutes(i + 5));
+        return h;
+    }
+
+    // ============= ONLINE BACKUP =============
+
+    private static void benchmarkBackup(int medicineCount, int historyMedicines, int years) throws Exception {
+        System.out.println("== Online backup (" + medicineCount + " medicines, " + years + " years of history) ==");
+        File dbFile = tempDatabase("bench_backup");
+        String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        Path backupDir = Files.createTempDirectory("bench_backups");
+
+        DatabaseManager db = DatabaseManager.open(url);
+        try (Connection conn = DriverManager.getConnection(url)) {
+            seedMedicines(conn, medicineCount);
+            seedDoseHistory(conn, historyMedicines, years);
+            for (boolean compress : new boolean[]{false, true}) {
+                // A writer keeps committing while the backup runs; it should never stall
+                AtomicBoolean running = new AtomicBoolean(true);
+                AtomicLong writes = new AtomicLong();
+                AtomicLong slowestWriteNanos = new AtomicLong();
+                Thread writer = new Thread(() -> {
+                    LocalDateTime base = LocalDateTime.now();
+                    while (running.get()) {
+                        long start = System.nanoTime();
+                        db.addDoseHistory(benchmarkDose(base, (int) writes.getAndIncrement()));
+                        slowestWriteNanos.accumulateAndGet(System.nanoTime() - start, Math::max);
+                    }
+                }, "bench-backup-writer");
+                writer.start();
+                DatabaseBackup.Result result = db.backupAsync(backupDir, 2, compress, null).join();
+                running.set(false);
+                writer.join();
+
+                if (result == null) {
+                    System.out.println("  backup failed");
+                    continue;
+                }
+                System.out.printf("  %-8s %6.1f MB -> %6.1f MB in %.2f s: copy %.0f MB/s, overall %.0f MB/s%n",
+                        compress ? "gzip" : "plain",
+                        result.getDatabaseBytes() / (1024.0 * 1024.0), result.getOutputBytes() / (1024.0 * 1024.0),
+                        result.getSeconds(), result.getCopyMegabytesPerSecond(), result.getMegabytesPerSecond());
+                System.out.printf("           concurrent writes: %,d, slowest %.1f ms%n",
+                        writes.get(), slowestWriteNanos.get() / 1_000_000.0);
+            }
+        } finally {
+            db.disconnect();
+            deleteDatabase(dbFile);
+            try (Stream<Path> files = Files.list(backupDir)) {
+                files.forEach(f -> f.toFile().delete());
+            }
+            Files.deleteIfExists(backupDir);
+        }
+    }
+
+    // ============= STREAMING EXPORT =============
+
+    private static void benchmarkExports(int medicineCount, int years) throws Exception {
+        System.out.println("== Streaming history export (" + medicineCount + " medicines x " + years + " years) ==");
+        File dbFile = tempDatabase("bench_exports");
+        String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+
+        DatabaseManager db = DatabaseManager.open(url);
+        try (Connection conn = DriverManager.getConnection(url)) {
+            seedMedicines(conn, medicineCount);
+            int rows = seedDoseHistory(conn, medicineCount, years);
+            System.out.printf("  history rows: %,d%n", rows);
+            String[] formats = {"csv", "csv.gz", "json.gz"};
+            for (String format : formats) {
+                System.gc();
+                HeapSampler heap = new HeapSampler();
+                AtomicLong progressCalls = new AtomicLong();
+                FileUtils.ExportProgress progress = written -> progressCalls.incrementAndGet();
+                long start = System.nanoTime();
+                String path = format.startsWith("csv")
+                        ? FileUtils.exportHistoryToCSV(db, null, null, "bench_export", format.endsWith(".gz"), progress)
+                        : FileUtils.exportHistoryToJSON(db, null, null, "bench_export", true, progress);
+                double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+                heap.stop();
+                if (path == null) {
+                    System.out.println("  " + format + ": export failed");
+                    continue;
+                }
+                File out = new File(path);
+                System.out.printf("  %-8s %,.0f rows/sec, %6.1f MB in %.2f s, %d progress calls, live heap after GC peak %.1f MB%n",
+                        format, rows / seconds, out.length() / (1024.0 * 1024.0), seconds, progressCalls.get(),
+                        heap.peakMegabytes());
+                out.delete();
+            }
+        } finally {
+            db.disconnect();
+            deleteDatabase(dbFile);
+        }
+    }
+
+    // Peak heap still in use after garbage collection, sampled while an export runs
+    private static final class HeapSampler {
+        private final AtomicLong peak = new AtomicLong();
+        private final AtomicBoolean running = new AtomicBoolean(true);
+        private final Thread thread;
+
+        HeapSampler() {
+            thread = new Thread(() -> {
+                while (running.get()) {
+                    sample();
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "bench-heap-sampler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void sample() {
+            long used = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                MemoryUsage afterGc = pool.getCollectionUsage();
+                if (pool.getType() == MemoryType.HEAP && afterGc != null) {
+                    used += afterGc.getUsed();
+                }
+            }
+            peak.accumulateAndGet(used, Math::max);
+        }
+
+        void stop() throws InterruptedException {
+            running.set(false);
+            thread.join();
+            sample();
+        }
+
+        double peakMegabytes() {
+            return peak.get() / (1024.0 * 1024.0);
+        }
+    }
+
+    // ============= HELPERS =============
+
+    private static File tempDatabase(String name) {
+        File file = new File(System.getProperty("java.io.tmpdir"), name + "_" + System.nanoTime() + ".db");
+        deleteDatabase(file);
+        return file;
+    }
+
+    private static void deleteDatabase(File file) {
+        for (String suffix : new String[]{"", "-wal", "-shm", "-journal"}) {
+            new File(file.getPath() + suffix).delete();
+        }
+    }
+}
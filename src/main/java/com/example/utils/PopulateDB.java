@@ -1,5 +1,6 @@
 package com.example.utils;
 
+import com.example.controller.HistoryController;
 import com.example.database.DatabaseManager;
 import com.example.model.DoseHistory;
 import com.example.model.Medicine;
@@ -39,6 +40,7 @@ public class PopulateDB {
         addCeevit(db);
         addMonas(db);
         
+        db.disconnect(); // commits history rows still queued
         System.out.println("Database population complete!");
         System.exit(0);
     }
@@ -59,7 +61,7 @@ public class PopulateDB {
         int id = db.addMedicine(m);
         if (id != -1) {
             System.out.println("Added Napa (ID: " + id + ")");
-            generateHistory(db, id, scheds);
+            generateHistory(new HistoryController(db), id, scheds);
         }
     }
 
@@ -78,7 +80,7 @@ public class PopulateDB {
         int id = db.addMedicine(m);
         if (id != -1) {
             System.out.println("Added Seclo (ID: " + id + ")");
-            generateHistory(db, id, scheds);
+            generateHistory(new HistoryController(db), id, scheds);
         }
     }
 
@@ -97,7 +99,7 @@ public class PopulateDB {
         int id = db.addMedicine(m);
         if (id != -1) {
             System.out.println("Added Ceevit (ID: " + id + ")");
-            generateHistory(db, id, scheds);
+            generateHistory(new HistoryController(db), id, scheds);
         }
     }
 
@@ -116,11 +118,11 @@ public class PopulateDB {
         int id = db.addMedicine(m);
         if (id != -1) {
             System.out.println("Added Monas (ID: " + id + ")");
-            generateHistory(db, id, scheds);
+            generateHistory(new HistoryController(db), id, scheds);
         }
     }
 
-    private static void generateHistory(DatabaseManager db, int medId, List<Schedule> scheds) {
+    private static void generateHistory(HistoryController history, int medId, List<Schedule> scheds) {
         // Generate history for last 3 days
         LocalDateTime now = LocalDateTime.now();
         Random random = new Random();
@@ -151,7 +153,8 @@ public class PopulateDB {
                 h.setTakenTime(takenTime);
                 h.setNotes(notes);
                 
-                db.addDoseHistory(h);
+                // Queued: the generated rows share a few group commits instead of one commit each
+                history.appendHistory(h);
             }
         }
     }
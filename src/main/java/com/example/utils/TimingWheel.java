@@ -0,0 +1,254 @@
+package com.example.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Timing Wheel
+ * Hashed wheel timer: one thread serves any number of pending deadlines (reminders,
+ * snoozes, auto-dismiss, escalation). Deadlines hash into a ring of buckets by tick; one
+ * further than a full turn away waits out the extra turns in its bucket, so schedule and
+ * cancel are O(1) and each tick only visits one bucket.
+ * Tasks run on the wheel thread and must be short; hand anything slow to AsyncUtils.
+ * With nothing pending the thread parks until the next schedule() instead of ticking.
+ */
+public final class TimingWheel {
+    private static final Logger logger = LoggerFactory.getLogger(TimingWheel.class);
+
+    private static final long DEFAULT_TICK_MILLIS = 100;
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+    // Bounds the work per tick when a burst of timers is scheduled at once
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private static final TimingWheel SHARED = new TimingWheel("timing-wheel", DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Thread worker;
+    private final long startTime = System.nanoTime();
+    // Handed over by any thread, linked into buckets by the worker only
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pending = new AtomicLong();
+    private long tick; // worker thread only
+
+    /**
+     * The application-wide wheel (100 ms ticks)
+     */
+    public static TimingWheel shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param wheelSize number of buckets, rounded up to a power of two
+     */
+    public TimingWheel(String threadName, long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMillis and wheelSize must be positive");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.worker = new Thread(this::run, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Run the task once after the delay (rounded up to the next tick)
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = System.nanoTime() - startTime + Math.max(unit.toNanos(delay), 0);
+        Timeout timeout = new Timeout(this, task, deadline);
+        newTimeouts.add(timeout);
+        if (pending.incrementAndGet() == 1) {
+            LockSupport.unpark(worker); // may be parked with nothing to do
+        }
+        return timeout;
+    }
+
+    /**
+     * Timers scheduled and neither fired nor cancelled yet
+     */
+    public long pendingCount() {
+        return pending.get();
+    }
+
+    // ============= WORKER =============
+
+    private void run() {
+        while (true) {
+            waitForNextTick();
+            processCancelled();
+            transferTimeouts();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    // Sleep until the current tick has passed
+    private void waitForNextTick() {
+        while (true) {
+            long now = System.nanoTime() - startTime;
+            if (pending.get() == 0) {
+                LockSupport.park(this);
+                // Every bucket is empty, so the wheel can jump straight to the present
+                tick = Math.max(tick, (System.nanoTime() - startTime) / tickNanos);
+                continue;
+            }
+            long sleepNanos = tickNanos * (tick + 1) - now;
+            if (sleepNanos <= 0) {
+                return;
+            }
+            LockSupport.parkNanos(this, sleepNanos);
+        }
+    }
+
+    private void transferTimeouts() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = newTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state.get() != Timeout.ST_PENDING) {
+                continue; // cancelled before it reached the wheel; processCancelled accounts for it
+            }
+            long targetTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (targetTick - tick) / wheel.length;
+            // Already overdue: fire on this tick
+            wheel[(int) (Math.max(targetTick, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void processCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+            pending.decrementAndGet();
+        }
+    }
+
+    private void expired(Timeout timeout) {
+        pending.decrementAndGet();
+        try {
+            timeout.task.run();
+        } catch (Throwable t) {
+            logger.error("Timer task failed", t);
+        }
+    }
+
+    // ============= BUCKETS AND TIMEOUTS =============
+
+    /**
+     * Doubly linked list of the timeouts that hash to one slot; worker thread only
+     */
+    private final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        // Runs once the tick is over, so every timeout on its last round is due
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                } else {
+                    remove(timeout);
+                    if (timeout.state.compareAndSet(Timeout.ST_PENDING, Timeout.ST_EXPIRED)) {
+                        expired(timeout);
+                    }
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+    /**
+     * Handle to one scheduled task
+     */
+    public static final class Timeout {
+        private static final int ST_PENDING = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final TimingWheel owner;
+        private final Runnable task;
+        private final long deadline; // nanos since the wheel started
+        private final AtomicInteger state = new AtomicInteger(ST_PENDING);
+        // Worker thread only
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimingWheel owner, Runnable task, long deadline) {
+            this.owner = owner;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Stop the task from running; false if it already ran or was cancelled.
+         * The slot itself is freed by the worker on its next tick.
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(ST_PENDING, ST_CANCELLED)) {
+                return false;
+            }
+            owner.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == ST_EXPIRED;
+        }
+    }
+}
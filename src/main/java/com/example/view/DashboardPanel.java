@@ -3,7 +3,9 @@ package com.example.view;
 import com.example.controller.*;
 import com.example.model.DoseHistory;
 import com.example.model.Medicine;
+import com.example.utils.DataChangeEvent;
 import com.example.utils.DataChangeListener;
+import com.example.utils.LatestRequest;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -11,6 +13,7 @@ import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class DashboardPanel extends JPanel implements DataChangeListener {
     private MedicineController medicineController;
@@ -28,6 +31,20 @@ public class DashboardPanel extends JPanel implements DataChangeListener {
     private JTable lowStockTable;
     private DefaultTableModel historyModel;
     private DefaultTableModel lowStockModel;
+    private final LatestRequest<HistoryStats> historyRequest = new LatestRequest<HistoryStats>().pauseWhileHidden(this);
+
+    // Today's counts and the recent rows, loaded together off the EDT
+    private static class HistoryStats {
+        final long taken;
+        final long missed;
+        final List<DoseHistory> recent;
+
+        HistoryStats(long taken, long missed, List<DoseHistory> recent) {
+            this.taken = taken;
+            this.missed = missed;
+            this.recent = recent;
+        }
+    }
 
     public DashboardPanel(MedicineController medController, ReminderController remController, HistoryController histController) {
         this.medicineController = medController;
@@ -202,23 +219,34 @@ public class DashboardPanel extends JPanel implements DataChangeListener {
     private void refreshData() {
         if(medicineController == null) return;
         
-        // Update Stats
+        // Update Stats (in memory)
         totalMedsLabel.setText(String.valueOf(medicineController.getTotalMedicinesCount()));
         pendingLabel.setText(String.valueOf(reminderController.getPendingCount()));
-        takenLabel.setText(String.valueOf(historyController.getTakenTodayCount()));
-        missedLabel.setText(String.valueOf(historyController.getMissedTodayCount()));
         
-        // Update History
-        updateHistoryTable();
-        
-        // Update Low Stock
+        // Update Low Stock (in memory)
         updateLowStockTable();
+        
+        // History stats and recent rows come from the database
+        historyRequest.submit(this::loadHistoryStats, this::showHistoryStats);
+    }
+
+    private CompletableFuture<HistoryStats> loadHistoryStats() {
+        CompletableFuture<Long> taken = historyController.getTakenTodayCountAsync();
+        CompletableFuture<Long> missed = historyController.getMissedTodayCountAsync();
+        CompletableFuture<List<DoseHistory>> recent = historyController.getRecentHistoryAsync(10);
+        return CompletableFuture.allOf(taken, missed, recent)
+                .thenApply(v -> new HistoryStats(taken.join(), missed.join(), recent.join()));
+    }
+    
+    private void showHistoryStats(HistoryStats stats) {
+        takenLabel.setText(String.valueOf(stats.taken));
+        missedLabel.setText(String.valueOf(stats.missed));
+        updateHistoryTable(stats.recent);
     }
     
-    private void updateHistoryTable() {
+    private void updateHistoryTable(List<DoseHistory> recent) {
         historyModel.setRowCount(0);
         DateTimeFormatter fmt = DateTimeFormatter.ofPattern("MMM dd HH:mm");
-        List<DoseHistory> recent = historyController.getRecentHistory(10);
         
         for(DoseHistory h : recent) {
              String timeStr = h.getTakenTime() != null ? h.getTakenTime().format(fmt) 
@@ -302,6 +330,11 @@ public class DashboardPanel extends JPanel implements DataChangeListener {
         }
     }
     
+    @Override
+    public void onDataChanged(List<DataChangeEvent> changes) {
+        refreshData(); // once per frame, however many topics changed
+    }
+
     @Override
     public void onMedicineDataChanged() {
         refreshData();
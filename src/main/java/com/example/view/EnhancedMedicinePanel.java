@@ -3,17 +3,25 @@ package com.example.view;
 import com.example.controller.MedicineController;
 import com.example.model.Medicine;
 import com.example.model.Schedule;
+import com.example.utils.AsyncUtils;
+import com.example.utils.DataChangeEvent;
 import com.example.utils.DataChangeListener;
+import com.example.utils.LatestRequest;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class EnhancedMedicinePanel extends JPanel implements DataChangeListener {
+    private static final Comparator<String> NAME_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
     private MedicineController controller;
     private JTable table;
     private DefaultTableModel tableModel;
@@ -22,6 +30,13 @@ public class EnhancedMedicinePanel extends JPanel implements DataChangeListener
     private JTextField searchField;
     private JCheckBox cbFilterMorning, cbFilterNoon, cbFilterNight;
     private JRadioButton rbFilterBefore, rbFilterAfter, rbFilterNone;
+    private final LatestRequest<List<Medicine>> searchRequest = new LatestRequest<List<Medicine>>().pauseWhileHidden(this);
+    // Whether the table shows search results rather than the whole catalog (in name order)
+    private boolean filtered;
+    // The filters behind the search results
+    private String filterQuery = "";
+    private String filterFrequency = "";
+    private String filterMeal = "";
 
     public EnhancedMedicinePanel(MedicineController controller) {
         this.controller = controller;
@@ -189,8 +204,19 @@ public class EnhancedMedicinePanel extends JPanel implements DataChangeListener
         if(rbFilterBefore.isSelected()) meal = "BEFORE_MEAL";
         else if(rbFilterAfter.isSelected()) meal = "AFTER_MEAL";
         
-        List<Medicine> results = controller.searchMedicines(query, freq, meal);
-        updateTableData(results);
+        filterQuery = query;
+        filterFrequency = freq;
+        filterMeal = meal;
+        filtered = true;
+        search();
+    }
+
+    // Re-run the applied search; later edits to the filter fields wait for the next apply
+    private void search() {
+        String query = filterQuery;
+        String frequency = filterFrequency;
+        String meal = filterMeal;
+        searchRequest.submit(() -> controller.searchMedicinesAsync(query, frequency, meal), this::updateTableData);
     }
     
     private JPanel createTablePanel() {
@@ -263,7 +289,7 @@ public class EnhancedMedicinePanel extends JPanel implements DataChangeListener
             int row = table.getSelectedRow();
             if(row >= 0) {
                 int id = (int) table.getValueAt(row, 0);
-                Medicine m = controller.getAllMedicines().stream().filter(med -> med.getId() == id).findFirst().orElse(null);
+                Medicine m = controller.getMedicineById(id);
                 if(m != null) showMedicineDialog(m);
             } else {
                 JOptionPane.showMessageDialog(this, "Please select a medicine to edit.", "Warning", JOptionPane.WARNING_MESSAGE);
@@ -290,7 +316,11 @@ public class EnhancedMedicinePanel extends JPanel implements DataChangeListener
                     "Are you sure you want to delete '" + name + "'?",
                     "Delete Medicine", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
                 if (confirm == JOptionPane.YES_OPTION) {
-                    controller.deleteMedicine(id);
+                    controller.deleteMedicineAsync(id).whenCompleteAsync((ok, error) -> {
+                        if (error != null || !ok) {
+                            showError("Could not delete '" + name + "'", error);
+                        }
+                    }, AsyncUtils.EDT);
                 }
             } else {
                 JOptionPane.showMessageDialog(this, "Please select a medicine to delete.", "Warning", JOptionPane.WARNING_MESSAGE);
@@ -321,22 +351,138 @@ public class EnhancedMedicinePanel extends JPanel implements DataChangeListener
     private void showWarning(String message) {
         JOptionPane.showMessageDialog(this, message, "Warning", JOptionPane.WARNING_MESSAGE);
     }
+
+    // A write that failed, either by its result or with an exception (then non-null)
+    private void showError(String message, Throwable error) {
+        if (error != null) {
+            message += "\n" + (error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+        }
+        JOptionPane.showMessageDialog(this, message, "Error", JOptionPane.ERROR_MESSAGE);
+    }
     
     private void refreshTable() {
+        searchRequest.cancel(); // a late search result must not replace the full list
+        filtered = false;
         updateTableData(controller.getAllMedicines());
     }
     
     private void updateTableData(List<Medicine> medicines) {
         tableModel.setRowCount(0);
         for(Medicine m : medicines) {
-            Vector<Object> row = new Vector<>();
-            row.add(m.getId());
-            row.add(m.getName());
-            row.add(m.getDosageSummary());
-            row.add(m.getStockQuantity());
-            row.add(m.getLowStockThreshold());
-            row.add(m.getDoseUnit());
-            tableModel.addRow(row);
+            tableModel.addRow(rowOf(m));
+        }
+    }
+
+    private static Vector<Object> rowOf(Medicine m) {
+        Vector<Object> row = new Vector<>();
+        row.add(m.getId());
+        row.add(m.getName());
+        row.add(m.getDosageSummary());
+        row.add(m.getStockQuantity());
+        row.add(m.getLowStockThreshold());
+        row.add(m.getDoseUnit());
+        return row;
+    }
+
+    private int rowIndexOf(Medicine m) {
+        int rows = tableModel.getRowCount();
+        if (filtered) {
+            // Search results may be in rank order; there are at most MAX_SEARCH_RESULTS of them
+            for (int i = 0; i < rows; i++) {
+                if ((int) tableModel.getValueAt(i, 0) == m.getId()) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        for (int i = firstRowNotBefore(m.getName()); i < rows && Objects.equals(nameAt(i), m.getName()); i++) {
+            if ((int) tableModel.getValueAt(i, 0) == m.getId()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int firstRowNotBefore(String name) {
+        int low = 0;
+        int high = tableModel.getRowCount();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (NAME_ORDER.compare(nameAt(mid), name) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private String nameAt(int row) {
+        return (String) tableModel.getValueAt(row, 1);
+    }
+
+    private boolean matchesFilters(Medicine m) {
+        return controller.matchesSearch(m, filterQuery, filterFrequency, filterMeal);
+    }
+
+    // Patch the one row a change touches; false when the whole table has to be rebuilt
+    private boolean applyChange(DataChangeEvent change) {
+        Medicine before = change.getBefore(Medicine.class);
+        Medicine after = change.getAfter(Medicine.class);
+        switch (change.getKind()) {
+            case ADDED:
+                if (after == null) {
+                    return false;
+                }
+                if (rowIndexOf(after) >= 0) {
+                    return true;
+                }
+                if (!filtered) {
+                    tableModel.insertRow(firstRowNotBefore(after.getName()), rowOf(after));
+                } else if (matchesFilters(after)) {
+                    search(); // the search decides where it ranks
+                }
+                return true;
+            case UPDATED:
+                if (before == null || after == null) {
+                    return false;
+                }
+                int row = rowIndexOf(before);
+                if (filtered && !matchesFilters(after)) {
+                    if (row >= 0) {
+                        tableModel.removeRow(row); // edited out of the search results
+                    }
+                    return true;
+                }
+                if (row < 0) {
+                    if (filtered) {
+                        search(); // edited into the search results
+                        return true;
+                    }
+                    return false; // row not known by its old name
+                }
+                if (filtered || Objects.equals(before.getName(), after.getName())) {
+                    Object[] values = rowOf(after).toArray();
+                    for (int col = 0; col < values.length; col++) {
+                        tableModel.setValueAt(values[col], row, col);
+                    }
+                } else {
+                    // Renamed: move the row to its new place in name order
+                    tableModel.removeRow(row);
+                    tableModel.insertRow(firstRowNotBefore(after.getName()), rowOf(after));
+                }
+                return true;
+            case REMOVED:
+                if (before == null) {
+                    return false;
+                }
+                row = rowIndexOf(before);
+                if (row >= 0) {
+                    tableModel.removeRow(row);
+                }
+                return true;
+            default:
+                return false;
         }
     }
     
@@ -368,6 +514,19 @@ public class EnhancedMedicinePanel extends JPanel implements DataChangeListener
         }
     }
     
+    @Override
+    public void onDataChanged(List<DataChangeEvent> changes) {
+        for (DataChangeEvent change : changes) {
+            if (change.getTopic() != DataChangeEvent.Topic.MEDICINE && change.getTopic() != DataChangeEvent.Topic.INVENTORY) {
+                continue;
+            }
+            if (!applyChange(change)) {
+                refreshTable();
+                return;
+            }
+        }
+    }
+
     @Override
     public void onMedicineDataChanged() {
         refreshTable();
@@ -498,15 +657,22 @@ public class EnhancedMedicinePanel extends JPanel implements DataChangeListener
             if(rowNi.getSchedule() != null) schedules.add(rowNi.getSchedule());
             if(rowC.getSchedule() != null) schedules.add(rowC.getSchedule());
             
-            Medicine med = (m != null) ? m : new Medicine();
+            // Edit a copy: the cached medicine changes only once the update is saved
+            Medicine med = (m != null) ? new Medicine(m) : new Medicine();
             med.setName(name);
             med.setDoseUnit(tfUnit.getText());
             med.setStockQuantity((Integer)spStock.getValue());
             med.setLowStockThreshold((Integer)spThreshold.getValue());
             med.setSchedules(schedules);
             
-            if(m == null) controller.addMedicine(med);
-            else controller.updateMedicine(med);
+            CompletableFuture<Boolean> saved = (m == null)
+                ? controller.addMedicineAsync(med).thenApply(id -> id >= 0)
+                : controller.updateMedicineAsync(med);
+            saved.whenCompleteAsync((ok, error) -> {
+                if (error != null || !ok) {
+                    showError("Could not save '" + name + "'", error);
+                }
+            }, AsyncUtils.EDT);
             
             dialog.dispose();
         });
@@ -533,7 +699,11 @@ public class EnhancedMedicinePanel extends JPanel implements DataChangeListener
         if(input != null) {
             try {
                 int newQty = Integer.parseInt(input);
-                controller.updateStock(id, newQty, "Manual Update");
+                controller.updateStockAsync(id, newQty, "Manual Update").whenCompleteAsync((ok, error) -> {
+                    if (error != null || !ok) {
+                        showError("Could not update stock for " + name, error);
+                    }
+                }, AsyncUtils.EDT);
             } catch(NumberFormatException e) {
                 JOptionPane.showMessageDialog(this, "Invalid number");
             }
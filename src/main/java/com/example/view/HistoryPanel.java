@@ -1,14 +1,12 @@
 package com.example.view;
 
 import com.example.controller.HistoryController;
-import com.example.model.DoseHistory;
+import com.example.controller.HistorySource;
+import com.example.utils.LatestRequest;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
 
 /**
  * History Panel - View dose history records with modern UI
@@ -16,8 +14,11 @@ import java.util.List;
 public class HistoryPanel extends JPanel {
     private HistoryController controller;
     private JTable table;
-    private DefaultTableModel tableModel;
+    private HistoryTableModel tableModel;
     private JComboBox<String> filterCombo;
+    private JLabel takenValue, missedValue, rateValue;
+    private final LatestRequest<HistorySource> historyRequest = new LatestRequest<HistorySource>().pauseWhileHidden(this);
+    private final LatestRequest<long[]> summaryRequest = new LatestRequest<long[]>().pauseWhileHidden(this);
     
     public HistoryPanel(HistoryController controller) {
         this.controller = controller;
@@ -68,10 +69,7 @@ public class HistoryPanel extends JPanel {
         
         JButton refreshBtn = ModernUIUtils.createButton("🔄 Refresh", ModernUIUtils.SUCCESS);
         refreshBtn.setPreferredSize(new Dimension(110, 32));
-        refreshBtn.addActionListener(e -> {
-            controller.loadHistory();
-            refreshTable();
-        });
+        refreshBtn.addActionListener(e -> refreshTable());
         filterPanel.add(refreshBtn);
         
         panel.add(filterPanel, BorderLayout.EAST);
@@ -84,13 +82,7 @@ public class HistoryPanel extends JPanel {
         panel.setBorder(BorderFactory.createEmptyBorder(20, 25, 15, 25));
         panel.setBackground(ModernUIUtils.BACKGROUND);
         
-        String[] columns = {"ID", "Medicine", "Scheduled Time", "Taken Time", "Status", "Notes"};
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        tableModel = new HistoryTableModel();
         
         table = new JTable(tableModel);
         ModernUIUtils.styleTable(table);
@@ -111,6 +103,8 @@ public class HistoryPanel extends JPanel {
         table.getColumnModel().getColumn(5).setPreferredWidth(200);
         
         JScrollPane scrollPane = ModernUIUtils.createModernScrollPane(table);
+        // Rows are loaded on demand; fetch the visible range (and the page after it) as the view moves
+        scrollPane.getViewport().addChangeListener(e -> prefetchVisibleRows());
         panel.add(scrollPane, BorderLayout.CENTER);
         
         return panel;
@@ -121,25 +115,22 @@ public class HistoryPanel extends JPanel {
         panel.setBackground(new Color(250, 250, 252));
         panel.setBorder(BorderFactory.createMatteBorder(1, 0, 0, 0, ModernUIUtils.BORDER));
         
-        long taken = controller.getTakenTodayCount();
-        long missed = controller.getMissedTodayCount();
-        
-        panel.add(createStatCard("✅ Taken Today", String.valueOf(taken), ModernUIUtils.SUCCESS));
-        panel.add(createStatCard("❌ Missed Today", String.valueOf(missed), ModernUIUtils.DANGER));
-        
-        double rate = (taken + missed) > 0 ? (taken * 100.0 / (taken + missed)) : 0;
-        panel.add(createStatCard("📊 Adherence Rate", String.format("%.1f%%", rate), ModernUIUtils.PRIMARY));
+        takenValue = new JLabel("-");
+        missedValue = new JLabel("-");
+        rateValue = new JLabel("-");
+        panel.add(createStatCard("✅ Taken Today", takenValue, ModernUIUtils.SUCCESS));
+        panel.add(createStatCard("❌ Missed Today", missedValue, ModernUIUtils.DANGER));
+        panel.add(createStatCard("📊 Adherence Rate", rateValue, ModernUIUtils.PRIMARY));
         
         return panel;
     }
     
-    private JPanel createStatCard(String label, String value, Color color) {
+    private JPanel createStatCard(String label, JLabel valueLabel, Color color) {
         JPanel card = new JPanel();
         card.setLayout(new BoxLayout(card, BoxLayout.Y_AXIS));
         card.setOpaque(false);
         card.setBorder(BorderFactory.createEmptyBorder(5, 20, 5, 20));
         
-        JLabel valueLabel = new JLabel(value);
         valueLabel.setFont(new Font("Segoe UI", Font.BOLD, 24));
         valueLabel.setForeground(color);
         valueLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
@@ -155,26 +146,29 @@ public class HistoryPanel extends JPanel {
     }
     
     private void refreshTable() {
-        tableModel.setRowCount(0);
-        List<DoseHistory> history = controller.getHistoryList();
-        DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-        
         String filter = (String) filterCombo.getSelectedItem();
-        
-        for (DoseHistory h : history) {
-            if (!"All".equals(filter) && !filter.equalsIgnoreCase(h.getStatus())) {
-                continue;
-            }
-            
-            tableModel.addRow(new Object[]{
-                h.getId(),
-                h.getMedicineName() != null ? h.getMedicineName() : "Unknown",
-                h.getScheduledTime() != null ? h.getScheduledTime().format(dtf) : "-",
-                h.getTakenTime() != null ? h.getTakenTime().format(dtf) : "-",
-                h.getStatus(),
-                h.getNotes() != null ? h.getNotes() : ""
-            });
-        }
+        String status = "All".equals(filter) ? null : filter.toUpperCase();
+        historyRequest.submit(() -> controller.openHistoryAsync(status), tableModel::setSource);
+        summaryRequest.submit(() -> controller.getTakenTodayCountAsync()
+                .thenCombine(controller.getMissedTodayCountAsync(), (taken, missed) -> new long[]{taken, missed}),
+                this::showSummary);
+    }
+
+    private void showSummary(long[] counts) {
+        long taken = counts[0];
+        long missed = counts[1];
+        takenValue.setText(String.valueOf(taken));
+        missedValue.setText(String.valueOf(missed));
+        double rate = (taken + missed) > 0 ? (taken * 100.0 / (taken + missed)) : 0;
+        rateValue.setText(String.format("%.1f%%", rate));
+    }
+
+    private void prefetchVisibleRows() {
+        Rectangle visible = table.getVisibleRect();
+        int first = table.rowAtPoint(visible.getLocation());
+        if (first < 0) return;
+        int last = table.rowAtPoint(new Point(visible.x, visible.y + visible.height - 1));
+        tableModel.prefetch(first, last >= 0 ? last : table.getRowCount() - 1);
     }
     
     // Custom renderer for status with color coding
@@ -0,0 +1,126 @@
+package com.example.view;
+
+import com.example.controller.HistorySource;
+import com.example.model.DoseHistory;
+import com.example.utils.AsyncUtils;
+
+import javax.swing.table.AbstractTableModel;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * History Table Model - virtual rows over a lazily loaded HistorySource.
+ * JTable only asks for the cells it paints, so only the visible rows (plus the
+ * page cache of the source) are ever loaded and formatted.
+ * Pages load on the database executor; until a page arrives its rows show a placeholder.
+ */
+public class HistoryTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"ID", "Medicine", "Scheduled Time", "Taken Time", "Status", "Notes"};
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final String LOADING = "…";
+
+    private HistorySource source;
+    // Pages of the current source with a load in flight
+    private final Set<Integer> pendingPages = new HashSet<>();
+
+    /**
+     * Start empty; rows appear once a counted source is set
+     */
+    public HistoryTableModel() {
+    }
+
+    /**
+     * Swap in a new source (new filter or refreshed data) and repaint.
+     * Call with a source whose size is already known (see HistoryController.openHistoryAsync).
+     */
+    public void setSource(HistorySource source) {
+        this.source = source;
+        pendingPages.clear();
+        fireTableDataChanged();
+    }
+
+    /**
+     * Load the rows around the visible range before they are painted.
+     * Reaches one page beyond the viewport so scrolling on does not wait for a query.
+     */
+    public void prefetch(int firstRow, int lastRow) {
+        if (source == null) return;
+        for (int page = Math.max(firstRow, 0) / HistorySource.PAGE_SIZE;
+             page <= (lastRow + HistorySource.PAGE_SIZE) / HistorySource.PAGE_SIZE; page++) {
+            requestPage(page);
+        }
+    }
+
+    private void requestPage(int page) {
+        int firstRow = page * HistorySource.PAGE_SIZE;
+        if (firstRow >= getRowCount() || source.isLoaded(firstRow) || !pendingPages.add(page)) {
+            return;
+        }
+        HistorySource requested = source;
+        AsyncUtils.supplyAsync(() -> {
+            requested.prefetch(firstRow, firstRow + HistorySource.PAGE_SIZE - 1);
+            return null;
+        }).whenCompleteAsync((ignored, error) -> {
+            if (requested != source) {
+                return; // filter changed while loading
+            }
+            pendingPages.remove(page);
+            int lastRow = Math.min(firstRow + HistorySource.PAGE_SIZE, getRowCount()) - 1;
+            if (error == null && lastRow >= firstRow) {
+                fireTableRowsUpdated(firstRow, lastRow);
+            }
+        }, AsyncUtils.EDT);
+    }
+
+    @Override
+    public int getRowCount() {
+        return source != null ? Math.max(source.knownSize(), 0) : 0;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 0 ? Integer.class : String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        DoseHistory h = source.peek(row);
+        if (h == null) {
+            if (source.isLoaded(row)) {
+                return null; // row no longer exists
+            }
+            requestPage(row / HistorySource.PAGE_SIZE);
+            return column == 0 ? null : LOADING;
+        }
+        switch (column) {
+            case 0: return h.getId();
+            case 1: return h.getMedicineName() != null ? h.getMedicineName() : "Unknown";
+            case 2: return format(h.getScheduledTime());
+            case 3: return format(h.getTakenTime());
+            case 4: return h.getStatus();
+            case 5: return h.getNotes() != null ? h.getNotes() : "";
+            default: return null;
+        }
+    }
+
+    private static String format(LocalDateTime time) {
+        return time != null ? time.format(TIME_FORMAT) : "-";
+    }
+}
@@ -2,23 +2,34 @@ package com.example.view;
 
 import com.example.controller.MedicineController;
 import com.example.model.Medicine;
+import com.example.utils.AsyncUtils;
+import com.example.utils.DataChangeEvent;
+import com.example.utils.DataChangeListener;
+import com.example.utils.LatestRequest;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
 
 /**
- * Inventory Panel - View and manage medicine stock levels with modern UI
+ * Inventory Panel - View and manage medicine stock levels with modern UI.
+ * Stock and medicine changes patch only the affected row.
  */
-public class InventoryPanel extends JPanel {
+public class InventoryPanel extends JPanel implements DataChangeListener {
     private MedicineController controller;
     private JTable table;
     private DefaultTableModel tableModel;
+    private static final Comparator<String> NAME_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+    private final LatestRequest<Void> reloadRequest = new LatestRequest<Void>().pauseWhileHidden(this);
     
     public InventoryPanel(MedicineController controller) {
         this.controller = controller;
+        this.controller.addDataChangeListener(this);
         setLayout(new BorderLayout());
         setBackground(ModernUIUtils.BACKGROUND);
         
@@ -52,10 +63,7 @@ public class InventoryPanel extends JPanel {
         // Refresh button
         JButton refreshBtn = ModernUIUtils.createButton("🔄 Refresh", ModernUIUtils.SUCCESS);
         refreshBtn.setPreferredSize(new Dimension(110, 32));
-        refreshBtn.addActionListener(e -> {
-            controller.loadMedicines();
-            refreshTable();
-        });
+        refreshBtn.addActionListener(e -> reloadRequest.submit(controller::reloadAsync, v -> refreshTable()));
         panel.add(refreshBtn, BorderLayout.EAST);
         
         return panel;
@@ -187,24 +195,122 @@ public class InventoryPanel extends JPanel {
         List<Medicine> medicines = controller.getAllMedicines();
         
         for (Medicine m : medicines) {
-            String status;
-            if (m.getStockQuantity() == 0) {
-                status = "OUT OF STOCK";
-            } else if (m.getStockQuantity() <= m.getLowStockThreshold()) {
-                status = "LOW STOCK";
+            tableModel.addRow(rowOf(m));
+        }
+    }
+
+    private static Object[] rowOf(Medicine m) {
+        String status;
+        if (m.getStockQuantity() == 0) {
+            status = "OUT OF STOCK";
+        } else if (m.getStockQuantity() <= m.getLowStockThreshold()) {
+            status = "LOW STOCK";
+        } else {
+            status = "IN STOCK";
+        }
+        
+        return new Object[]{
+            m.getId(),
+            m.getName(),
+            m.getStockQuantity(),
+            m.getLowStockThreshold(),
+            status,
+            m.getDoseUnit() != null ? m.getDoseUnit() : "units"
+        };
+    }
+
+    // Rows are kept in name order like the catalog, so a medicine's row is found by binary search
+    private int rowIndexOf(Medicine m) {
+        int rows = tableModel.getRowCount();
+        for (int i = firstRowNotBefore(m.getName()); i < rows && Objects.equals(nameAt(i), m.getName()); i++) {
+            if ((int) tableModel.getValueAt(i, 0) == m.getId()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int firstRowNotBefore(String name) {
+        int low = 0;
+        int high = tableModel.getRowCount();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (NAME_ORDER.compare(nameAt(mid), name) < 0) {
+                low = mid + 1;
             } else {
-                status = "IN STOCK";
+                high = mid;
             }
-            
-            tableModel.addRow(new Object[]{
-                m.getId(),
-                m.getName(),
-                m.getStockQuantity(),
-                m.getLowStockThreshold(),
-                status,
-                m.getDoseUnit() != null ? m.getDoseUnit() : "units"
-            });
         }
+        return low;
+    }
+
+    private String nameAt(int row) {
+        return (String) tableModel.getValueAt(row, 1);
+    }
+
+    @Override
+    public void onDataChanged(List<DataChangeEvent> changes) {
+        for (DataChangeEvent change : changes) {
+            Medicine before = change.getBefore(Medicine.class);
+            Medicine after = change.getAfter(Medicine.class);
+            switch (change.getKind()) {
+                case ADDED:
+                    if (after != null && rowIndexOf(after) < 0) {
+                        tableModel.insertRow(firstRowNotBefore(after.getName()), rowOf(after));
+                    }
+                    break;
+                case UPDATED:
+                    int row = before != null ? rowIndexOf(before) : -1;
+                    if (row < 0 || after == null) {
+                        refreshTable(); // row not known by its old name
+                        return;
+                    }
+                    if (Objects.equals(before.getName(), after.getName())) {
+                        Object[] values = rowOf(after);
+                        for (int col = 0; col < values.length; col++) {
+                            tableModel.setValueAt(values[col], row, col);
+                        }
+                    } else {
+                        // Renamed: move the row to its new place in name order
+                        tableModel.removeRow(row);
+                        tableModel.insertRow(firstRowNotBefore(after.getName()), rowOf(after));
+                    }
+                    break;
+                case REMOVED:
+                    if (before == null) {
+                        refreshTable();
+                        return;
+                    }
+                    int removed = rowIndexOf(before);
+                    if (removed >= 0) {
+                        tableModel.removeRow(removed);
+                    }
+                    break;
+                default:
+                    refreshTable();
+                    return;
+            }
+        }
+    }
+
+    @Override
+    public void onMedicineDataChanged() {
+        refreshTable();
+    }
+
+    @Override
+    public void onInventoryDataChanged() {
+        refreshTable();
+    }
+
+    @Override
+    public void onReminderDataChanged() {
+        // No visual impact on the inventory table
+    }
+
+    @Override
+    public void onHistoryDataChanged() {
+        // No visual impact on the inventory table
     }
     
     private void showAddStockDialog() {
@@ -233,10 +339,13 @@ public class InventoryPanel extends JPanel {
         
         if (result == JOptionPane.OK_OPTION) {
             int addQty = (int) spinner.getValue();
-            int newQty = currentStock + addQty;
-            controller.updateStock(medId, newQty, "Stock added: +" + addQty);
-            refreshTable();
-            showSuccess("Added " + addQty + " units to " + medName);
+            controller.adjustStockAsync(medId, addQty, "Stock added: +" + addQty).whenCompleteAsync((newQty, error) -> {
+                if (error != null || newQty < 0) {
+                    showError("Could not update stock for " + medName, error);
+                    return;
+                }
+                showSuccess("Added " + addQty + " units to " + medName);
+            }, AsyncUtils.EDT);
         }
     }
     
@@ -266,9 +375,13 @@ public class InventoryPanel extends JPanel {
         
         if (result == JOptionPane.OK_OPTION) {
             int newQty = (int) spinner.getValue();
-            controller.updateStock(medId, newQty, "Stock adjusted to: " + newQty);
-            refreshTable();
-            showSuccess("Stock adjusted to " + newQty + " for " + medName);
+            controller.updateStockAsync(medId, newQty, "Stock adjusted to: " + newQty).whenCompleteAsync((ok, error) -> {
+                if (error != null || !ok) {
+                    showError("Could not adjust stock for " + medName, error);
+                    return;
+                }
+                showSuccess("Stock adjusted to " + newQty + " for " + medName);
+            }, AsyncUtils.EDT);
         }
     }
     
@@ -300,10 +413,16 @@ public class InventoryPanel extends JPanel {
             int newThreshold = (int) spinner.getValue();
             Medicine m = controller.getMedicineById(medId);
             if (m != null) {
+                // Edit a copy: the cached medicine changes only once the update is saved
+                m = new Medicine(m);
                 m.setLowStockThreshold(newThreshold);
-                controller.updateMedicine(m);
-                refreshTable();
-                showSuccess("Threshold set to " + newThreshold + " for " + medName);
+                controller.updateMedicineAsync(m).whenCompleteAsync((ok, error) -> {
+                    if (error != null || !ok) {
+                        showError("Could not set the threshold for " + medName, error);
+                        return;
+                    }
+                    showSuccess("Threshold set to " + newThreshold + " for " + medName);
+                }, AsyncUtils.EDT);
             }
         }
     }
@@ -343,6 +462,14 @@ public class InventoryPanel extends JPanel {
     private void showSuccess(String message) {
         JOptionPane.showMessageDialog(this, message, "Success", JOptionPane.INFORMATION_MESSAGE);
     }
+
+    // A write that failed, either by its result or with an exception (then non-null)
+    private void showError(String message, Throwable error) {
+        if (error != null) {
+            message += "\n" + (error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+        }
+        JOptionPane.showMessageDialog(this, message, "Error", JOptionPane.ERROR_MESSAGE);
+    }
     
     // Custom renderer for status column
     private class StockStatusRenderer extends DefaultTableCellRenderer {
@@ -464,10 +591,14 @@ public class InventoryPanel extends JPanel {
             medicine.setStockQuantity((Integer) stockSpinner.getValue());
             medicine.setLowStockThreshold((Integer) thresholdSpinner.getValue());
             
-            controller.addMedicine(medicine);
-            refreshTable();
             dialog.dispose();
-            showSuccess("Medicine '" + name + "' added successfully!");
+            controller.addMedicineAsync(medicine).whenCompleteAsync((id, error) -> {
+                if (error != null || id < 0) {
+                    showError("Could not add medicine '" + name + "'", error);
+                    return;
+                }
+                showSuccess("Medicine '" + name + "' added successfully!");
+            }, AsyncUtils.EDT);
         });
         
         JButton cancelBtn = ModernUIUtils.createButton("✖ Cancel", ModernUIUtils.TEXT_SECONDARY);
@@ -497,9 +628,13 @@ public class InventoryPanel extends JPanel {
             "Delete Medicine", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
         
         if (confirm == JOptionPane.YES_OPTION) {
-            controller.deleteMedicine(medId);
-            refreshTable();
-            showSuccess("Medicine '" + medName + "' deleted successfully!");
+            controller.deleteMedicineAsync(medId).whenCompleteAsync((ok, error) -> {
+                if (error != null || !ok) {
+                    showError("Could not delete medicine '" + medName + "'", error);
+                    return;
+                }
+                showSuccess("Medicine '" + medName + "' deleted successfully!");
+            }, AsyncUtils.EDT);
         }
     }
 }
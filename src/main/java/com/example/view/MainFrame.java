@@ -2,6 +2,8 @@ package com.example.view;
 
 import com.example.controller.*;
 import com.example.service.MedicineReminderService;
+import com.example.utils.DataChangeBus;
+import com.example.utils.DataChangeListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,6 +19,7 @@ public class MainFrame extends JFrame {
     private AuthController authController;
     private MedicineReminderService reminderService;
     private LiveClockPanel clockPanel;
+    private JTabbedPane tabbedPane;
     
     public MainFrame() {
         setTitle("DailyDose - Medicine Tracker");
@@ -99,7 +102,7 @@ public class MainFrame extends JFrame {
         add(topPanel, BorderLayout.NORTH);
 
         // Create styled tabs
-        JTabbedPane tabbedPane = createStyledTabbedPane();
+        tabbedPane = createStyledTabbedPane();
         
         tabbedPane.addTab("🏠 Dashboard", new DashboardPanel(medicineController, reminderController, historyController));
         tabbedPane.addTab("💊 Medicines", new EnhancedMedicinePanel(medicineController));
@@ -193,6 +196,14 @@ public class MainFrame extends JFrame {
         if (reminderService != null) {
             reminderService.stop();
         }
+        // The change bus outlives this window; stop delivering to its panels
+        if (tabbedPane != null) {
+            for (Component tab : tabbedPane.getComponents()) {
+                if (tab instanceof DataChangeListener) {
+                    DataChangeBus.shared().unsubscribeAll((DataChangeListener) tab);
+                }
+            }
+        }
         super.dispose();
     }
 }
@@ -4,12 +4,15 @@ import com.example.controller.MedicineController;
 import com.example.controller.ReminderController;
 import com.example.model.Medicine;
 import com.example.model.Reminder;
+import com.example.utils.AsyncUtils;
+import com.example.utils.LatestRequest;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 
 public class ReminderPanel extends JPanel {
@@ -17,6 +20,8 @@ public class ReminderPanel extends JPanel {
     private MedicineController medicineController;
     private JTable table;
     private DefaultTableModel tableModel;
+    private List<Reminder> reminders = new ArrayList<>();
+    private final LatestRequest<List<Reminder>> reminderRequest = new LatestRequest<List<Reminder>>().pauseWhileHidden(this);
     
     public ReminderPanel(ReminderController controller) {
         this.controller = controller;
@@ -166,8 +171,12 @@ public class ReminderPanel extends JPanel {
     }
     
     private void refreshTable() {
+        reminderRequest.submit(controller::getDailyRemindersAsync, this::showReminders);
+    }
+    
+    private void showReminders(List<Reminder> list) {
+        reminders = list;
         tableModel.setRowCount(0);
-        List<Reminder> list = controller.getDailyReminders();
         DateTimeFormatter fmt = DateTimeFormatter.ofPattern("HH:mm");
         
         for(Reminder r : list) {
@@ -190,20 +199,18 @@ public class ReminderPanel extends JPanel {
         int id = (int) tableModel.getValueAt(row, 0);
         String medName = (String) tableModel.getValueAt(row, 1);
         
-        List<Reminder> list = controller.getDailyReminders();
-        Reminder r = list.stream().filter(rem -> rem.getId() == id).findFirst().orElse(null);
+        // The list shown in the table; no need to regenerate reminders for a lookup
+        Reminder r = reminders.stream().filter(rem -> rem.getId() == id).findFirst().orElse(null);
         
         if (r != null && !"TAKEN".equals(r.getStatus())) {
             // Get the medicine object by name
-            Medicine medicine = medicineController.getAllMedicines().stream()
-                .filter(m -> m.getName().equals(r.getMedicineName()))
-                .findFirst()
-                .orElse(null);
+            Medicine medicine = medicineController.getMedicineByName(r.getMedicineName());
             
             if (medicine != null) {
-                controller.markAsTaken(r, medicine);
-                refreshTable();
-                showSuccess("Marked '" + medName + "' as taken!");
+                controller.markAsTakenAsync(r, medicine).thenRunAsync(() -> {
+                    refreshTable();
+                    showSuccess("Marked '" + medName + "' as taken!");
+                }, AsyncUtils.EDT);
             } else {
                 showWarning("Medicine not found for this reminder.");
             }